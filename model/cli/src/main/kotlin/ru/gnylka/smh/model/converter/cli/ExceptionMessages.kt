@@ -18,4 +18,8 @@ const val LOG_UNKNOWN_EXCEPTION = "Unexpected exception occured: %s"
 const val LOG_LOADED_MODEL = "Loaded model from %s"
 const val LOG_CONVERTED_MODEL = "Converted model %s"
 const val LOG_OPTIMIZED_MODEL = "Optimized model %s"
+const val LOG_QUANTIZATION_ERRORS = "Quantized model %s, maximum errors: " +
+        "points %s, normals %s degrees, texture coordinates %s"
+const val LOG_CACHE_MISS_RATIOS = "Reordered part %s of model %s for vertex cache, " +
+        "ACMR %.3f -> %.3f"
 const val LOG_WROTE_MODEL = "Wrote model to %s"
@@ -56,7 +56,18 @@ private fun operate(data: SessionData) {
     if (data.skipNormals)
         simpleModel = removeNormals(simpleModel)
 
-    val opts = data.optimize
+    // quantized vertices are written as they are
+    val opts =
+            if (data.quantize) data.optimize.intersect(setOf(
+                    OptimizationOptions.OPTIMIZE_PARTS,
+                    OptimizationOptions.DELTA_PARTS,
+                    OptimizationOptions.OPTIMIZE_VERTEX_CACHE
+            ))
+            else data.optimize
+
+    if (OptimizationOptions.OPTIMIZE_VERTEX_CACHE in opts)
+        simpleModel = optimizeVertexCache(simpleModel, data)
+    val deltaParts = OptimizationOptions.DELTA_PARTS in opts && data.isBinary
     val optimizedModel = optimizeModel(
             simpleModel,
             OptimizationOptions.OPTIMIZE_POINTS in opts,
@@ -65,18 +76,43 @@ private fun operate(data: SessionData) {
             OptimizationOptions.INDEX_NORMALS in opts,
             OptimizationOptions.OPTIMIZE_TEX_COORDS in opts,
             OptimizationOptions.INDEX_TEX_COORDS in opts,
-            OptimizationOptions.OPTIMIZE_PARTS in opts
+            OptimizationOptions.OPTIMIZE_PARTS in opts && !deltaParts,
+            parallel = data.parallelOptimization
     )
 
     if (data.skipNormals || opts.isNotEmpty())
         data.logger.fine(LOG_OPTIMIZED_MODEL.format(data.modelName))
 
-    createFileOutput(data.toFile, data.compress).use {
-        writeModel(optimizedModel, it, data.isBinary)
+    if (data.quantize) getQuantizationErrors(optimizedModel).run {
+        data.logger.info(LOG_QUANTIZATION_ERRORS.format(data.modelName,
+                maxPointError, maxNormalAngle, maxTexCoordError))
     }
+
+    createParentDirectories(data.toFile)
+    // uncompressed model is written to the file channel at once
+    if (data.compress) createCompressedOutput(data.toFile).use {
+        writeModel(optimizedModel, it, data.isBinary,
+                quantize = data.quantize, deltaParts = deltaParts)
+    } else writeModel(optimizedModel, data.toFile, data.isBinary,
+            quantize = data.quantize, deltaParts = deltaParts)
     data.logger.fine(LOG_WROTE_MODEL.format(absoluteNormalized(data.toFile)))
 }
 
+// parts are reordered separately, so that ACMR can be logged before they are optimized
+private fun optimizeVertexCache(model: SimpleModel, data: SessionData): SimpleModel {
+    val ratios = getCacheMissRatios(model)
+    val optimizedModel = optimizeModel(model,
+            false, false, false, false, false, false, false,
+            true
+    )
+    val newRatios = getCacheMissRatios(optimizedModel)
+
+    for (i in ratios.indices)
+        data.logger.info(LOG_CACHE_MISS_RATIOS.format(i, data.modelName, ratios[i], newRatios[i]))
+
+    return optimizedModel
+}
+
 private fun removeNormals(model: SimpleModel) = model.run {
     val empty = floatArrayOf()
     SimpleModel(
@@ -88,20 +124,16 @@ private fun removeNormals(model: SimpleModel) = model.run {
     )
 }
 
-private fun createFileOutput(toFile: Path, compress: Boolean): OutputStream {
+private fun createParentDirectories(toFile: Path) {
     if (Files.notExists(toFile.parent))
         Files.createDirectories(toFile.parent)
-
-    var output: OutputStream =
-            Files.newOutputStream(toFile,
-                    WRITE,
-                    CREATE,
-                    TRUNCATE_EXISTING
-            ).buffered()
-
-    if (compress) output = GZIPOutputStream(output)
-
-    return output
 }
 
+private fun createCompressedOutput(toFile: Path): OutputStream =
+        GZIPOutputStream(Files.newOutputStream(toFile,
+                WRITE,
+                CREATE,
+                TRUNCATE_EXISTING
+        ).buffered())
+
 private fun absoluteNormalized(path: Path) = path.toAbsolutePath().normalize()
@@ -1,6 +1,9 @@
 package ru.gnylka.smh.model.converter.cli
 
-enum class OptimizationOptions {
+enum class OptimizationOptions(
+        // whether the option is applied when no options are specified
+        val isDefault: Boolean = true
+) {
 
     OPTIMIZE_POINTS,
     INDEX_POINTS,
@@ -8,6 +11,10 @@ enum class OptimizationOptions {
     INDEX_NORMALS,
     OPTIMIZE_TEX_COORDS,
     INDEX_TEX_COORDS,
-    OPTIMIZE_PARTS
+    OPTIMIZE_PARTS,
+    // changes the format of the output, which older loaders can't read
+    DELTA_PARTS(isDefault = false),
+    // reorders faces and vertices, which is opt-in as well as in optimizeModel
+    OPTIMIZE_VERTEX_CACHE(isDefault = false)
 
 }
@@ -14,7 +14,9 @@ data class SessionData(
         val pickFirstTexture: Boolean,
         val skipNormals: Boolean,
         val optimize: Set<OptimizationOptions>,
+        val quantize: Boolean,
         val compress: Boolean,
+        val parallelOptimization: Boolean,
         val logger: Logger,
         val modelName: String
 )
@@ -18,10 +18,15 @@ val MAX_LOGGING_LEVEL = LOGGING_LEVELS.size - 1
 
 val knownExtensions = getAvailableLoaders().map { it.fileExtensions }.flatten().toSet()
 
-fun getSessionsDataFromArguments(container: ArgumentsContainer) =
-        getInputFiles(container.input ?: emptyArray())
-                .map { getDataForFile(it, container.output, container.fileType) }
-                .map { getSessionData(it, container) }
+fun getSessionsDataFromArguments(container: ArgumentsContainer): List<SessionData> {
+    val filesData = getInputFiles(container.input ?: emptyArray())
+            .map { getDataForFile(it, container.output, container.fileType) }
+
+    // several models are already converted one per thread,
+    // so only a single model is optimized using multiple threads
+    val parallelOptimization = container.parallel && filesData.size == 1
+    return filesData.map { getSessionData(it, container, parallelOptimization) }
+}
 
 private fun getInputFiles(inputPaths: Array<Path>) =
         inputPaths.map {
@@ -62,7 +67,8 @@ private fun getDataForFile(inputFile: Path,
 }
 
 private fun getSessionData(filesData: FilesData,
-                           container: ArgumentsContainer): SessionData {
+                           container: ArgumentsContainer,
+                           parallelOptimization: Boolean): SessionData {
     val args = container.pluginArguments ?: emptyMap()
     val splittedArguments = args.map {
         it.key to it.value.split(" ").toTypedArray()
@@ -70,7 +76,7 @@ private fun getSessionData(filesData: FilesData,
 
 
     val optimizationOptions = container.optimize?.let {
-        if (it.isEmpty()) OptimizationOptions.values().toSet()
+        if (it.isEmpty()) OptimizationOptions.values().filter(OptimizationOptions::isDefault).toSet()
         else it.toSet()
     } ?: emptySet()
 
@@ -89,7 +95,9 @@ private fun getSessionData(filesData: FilesData,
             container.pickFirstTexture,
             container.skipNormals,
             optimizationOptions,
+            container.quantize && filesData.fileType === OutputFileType.BINARY,
             container.compress,
+            parallelOptimization,
             logger,
             modelName
     )
@@ -100,8 +100,12 @@ class ArgumentsContainer : Runnable {
                         "OPTIMIZE_POINTS, INDEX_POINTS, " +
                         "OPTIMIZE_NORMALS, INDEX_NORMALS, " +
                         "OPTIMIZE_TEX_COORDS, INDEX_TEX_COORDS, " +
-                        "OPTIMIZE_PARTS",
-                "Specify no options to apply all of them",
+                        "OPTIMIZE_PARTS, DELTA_PARTS, OPTIMIZE_VERTEX_CACHE",
+                "DELTA_PARTS (binary output only) replaces OPTIMIZE_PARTS " +
+                        "and changes the format, so it is applied only when specified explicitly",
+                "OPTIMIZE_VERTEX_CACHE reorders faces and vertices before other optimizations, " +
+                        "it is applied only when specified explicitly",
+                "Specify no options to apply all of them except DELTA_PARTS and OPTIMIZE_VERTEX_CACHE",
                 "By default none are applied"
             ],
             split = ",",
@@ -109,19 +113,35 @@ class ArgumentsContainer : Runnable {
             order = 8)
     var optimize: Array<OptimizationOptions>? = null
 
+    @JvmField
+    @Option(names = ["--quantize"],
+            description = [
+                "Store points, normals and texture coordinates as 16-bit values " +
+                        "(binary output only)",
+                "Points, normals and texture coordinates are not optimized then"
+            ],
+            defaultValue = "false",
+            negatable = true,
+            order = 9)
+    var quantize: Boolean = false
+
     @JvmField
     @Option(names = ["-c", "--compress"],
             description = ["Use gzip compression"],
             defaultValue = "false",
             negatable = true,
-            order = 9)
+            order = 10)
     var compress: Boolean = false
 
     @JvmField
     @Option(names = ["--parallel"],
-            description = ["Convert models using multiple threads"],
+            description = [
+                "Convert models using multiple threads",
+                "If there is a single model, its points, normals, texture coordinates " +
+                        "and parts are optimized concurrently instead"
+            ],
             defaultValue = "false",
-            order = 10)
+            order = 11)
     var parallel: Boolean = false
 
     @JvmField
@@ -129,7 +149,7 @@ class ArgumentsContainer : Runnable {
             description = ["List all available loaders"],
             defaultValue = "false",
             help = true,
-            order = 11)
+            order = 12)
     var listLoaders: Boolean = false
 
     @JvmField
@@ -137,7 +157,7 @@ class ArgumentsContainer : Runnable {
             description = ["List all available plugins"],
             defaultValue = "false",
             help = true,
-            order = 12)
+            order = 13)
     var listPlugins: Boolean = false
 
     @JvmField
@@ -146,19 +166,19 @@ class ArgumentsContainer : Runnable {
                 "Amount of information being logged",
                 "Specify 2 times to see stacktraces on exceptions"
             ],
-            order = 13)
+            order = 14)
     var verbose: BooleanArray? = null
 
     @Option(names = ["-h", "--help"],
             description = ["Print help information"],
             usageHelp = true,
-            order = 14)
+            order = 15)
     var help: Boolean = false
 
     @Option(names = ["--version"],
             description = ["Print version information"],
             versionHelp = true,
-            order = 15)
+            order = 16)
     var version: Boolean = false
 
     override fun run() = Unit
@@ -4,6 +4,11 @@ import ru.gnylka.smh.model.converter.internal.*
 import ru.gnylka.smh.model.data.SimpleModel
 import ru.gnylka.smh.processing.data.Model
 import java.io.OutputStream
+import java.nio.channels.Channels
+import java.nio.channels.FileChannel
+import java.nio.channels.WritableByteChannel
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption.*
 
 /**
  * Converts [Model] to [SimpleModel]
@@ -22,7 +27,16 @@ fun convertModel(
 /**
  * Optimizes the specified model
  *
- * There are 7 optimization methods, each can be enabled or disabled (by default all are enabled):
+ * There are 8 optimization methods, each can be enabled or disabled
+ * (by default all but vertex cache optimization, which changes the order of vertices, are enabled):
+ *
+ * ## Vertex cache optimization
+ *
+ * Faces of every part are reordered so that their vertices are more likely
+ * to be found in GPU's post-transform vertex cache (Tipsify algorithm),
+ * then vertices are renumbered in the order of their first use
+ * (vertices with texture coordinates still go first).
+ * It is applied before all other methods, see [getCacheMissRatios]
  *
  * ## Points optimization
  *
@@ -108,14 +122,15 @@ fun convertModel(
  *
  * @param simpleModel model to optimize
  * @param optimizePoints use points optimization
- * @param indexPoints use points indexing.
- * Note: points indexing can seriously slow down model loading. Use with caution!
+ * @param indexPoints use points indexing
  * @param optimizeNormals use normals optimization
  * @param indexNormals use normals indexing
  * @param optimizeTexCoords use texture coordinates optimization
  * @param indexTexCoords use texture coordinates indexing
- * Note: texture coordinates indexing can seriously slow down model loading. Use with caution!
  * @param optimizeParts use parts optimization
+ * @param optimizeVertexCache use vertex cache optimization, model must not be optimized
+ * @param parallel optimize points, normals, texture coordinates and every part concurrently
+ * (in [java.util.concurrent.ForkJoinPool.commonPool]), it does not affect the result
  *
  * @return a new model with optimizations applied
  *
@@ -129,22 +144,74 @@ fun optimizeModel(
         indexNormals: Boolean = true,
         optimizeTexCoords: Boolean = true,
         indexTexCoords: Boolean = true,
-        optimizeParts: Boolean = true
+        optimizeParts: Boolean = true,
+        optimizeVertexCache: Boolean = false,
+        parallel: Boolean = false
 ) = ModelOptimization(
         simpleModel,
         optimizePoints, indexPoints,
         optimizeNormals, indexNormals,
         optimizeTexCoords, indexTexCoords,
-        optimizeParts
+        optimizeParts, optimizeVertexCache,
+        parallel
 ).optimizeModel()
 
+/**
+ * Computes average cache miss ratio (ACMR) of every part: the number of vertices
+ * per face which are not found in FIFO post-transform vertex cache of 16 vertices
+ * (0.5 for a large regular grid at best, 3 at worst)
+ *
+ * @param simpleModel model to check, parts must not be optimized
+ *
+ * @return ACMR of every part
+ *
+ * @author Z00000000Z
+ */
+fun getCacheMissRatios(simpleModel: SimpleModel) =
+        FloatArray(simpleModel.parts.size) { getCacheMissRatio(simpleModel.parts[it]) }
+
+/**
+ * Computes the errors which quantized encoding introduces into the model
+ * (see [writeModel])
+ *
+ * @param simpleModel model to check, points, normals and texture coordinates
+ * must not be optimized
+ *
+ * @return maximum errors of points, normals and texture coordinates
+ *
+ * @author Z00000000Z
+ */
+fun getQuantizationErrors(simpleModel: SimpleModel) = Quantization(simpleModel).getErrors()
+
 /**
  * Writes model to the output stream (the stream is not closed)
  *
+ * ## Delta encoding of parts
+ *
+ * Binary format can store each part index as the difference from the previous index,
+ * zigzag-encoded and written as a varint (1 byte for differences in [-64; 63]),
+ * which is usually smaller than parts optimization of [optimizeModel] and faster to load.
+ * Parts must not be optimized then
+ *
+ * ## Quantized encoding
+ *
+ * Binary format can store points, normals and texture coordinates as 16-bit values
+ * (which makes them 2-3 times smaller):
+ * - each component of points and texture coordinates is an unsigned short
+ * relative to the bounding box of the model's points (texture coordinates)
+ * - normals are stored as 2 shorts using octahedral encoding
+ *
+ * Loaders convert them back to floats, use [getQuantizationErrors] to find out
+ * how much they differ from the original values.
+ * Points, normals and texture coordinates must not be optimized
+ * (only [optimizeModel]'s parts optimization can be used)
+ *
  * @param simpleModel model to write
  * @param output stream to write model to
  * @param isBinary whether to use binary format or text
  * @param indent a string used for indenting text output
+ * @param quantize whether to use quantized encoding (binary format only)
+ * @param deltaParts whether to use delta encoding of parts (binary format only)
  *
  * @author Z00000000Z
  */
@@ -152,8 +219,64 @@ fun writeModel(
         simpleModel: SimpleModel,
         output: OutputStream,
         isBinary: Boolean = true,
-        indent: String = "  "
+        indent: String = "  ",
+        quantize: Boolean = false,
+        deltaParts: Boolean = false
 ) {
-    if (isBinary) BinaryWriting(simpleModel).writeModelAsBinary(output)
+    if (isBinary) BinaryWriting(simpleModel, quantize, deltaParts).writeModelAsBinary(output)
     else TextWriting(simpleModel, indent).writeModelAsText(output)
 }
+
+/**
+ * Writes model to the channel (the channel is not closed), see [writeModel]
+ *
+ * Binary model is written through a buffer of a fixed size,
+ * sizes of its sections are counted before they are written
+ *
+ * @param simpleModel model to write
+ * @param channel channel to write model to
+ * @param isBinary whether to use binary format or text
+ * @param indent a string used for indenting text output
+ * @param quantize whether to use quantized encoding (binary format only)
+ * @param deltaParts whether to use delta encoding of parts (binary format only)
+ *
+ * @author Z00000000Z
+ */
+fun writeModel(
+        simpleModel: SimpleModel,
+        channel: WritableByteChannel,
+        isBinary: Boolean = true,
+        indent: String = "  ",
+        quantize: Boolean = false,
+        deltaParts: Boolean = false
+) {
+    if (isBinary) BinaryWriting(simpleModel, quantize, deltaParts).writeModelAsBinary(channel)
+    else TextWriting(simpleModel, indent).writeModelAsText(Channels.newOutputStream(channel))
+}
+
+/**
+ * Writes model to the file (the file is created or truncated), see [writeModel]
+ *
+ * Binary model is written through a buffer of a fixed size,
+ * the sections directory is filled when sections are written
+ *
+ * @param simpleModel model to write
+ * @param file file to write model to
+ * @param isBinary whether to use binary format or text
+ * @param indent a string used for indenting text output
+ * @param quantize whether to use quantized encoding (binary format only)
+ * @param deltaParts whether to use delta encoding of parts (binary format only)
+ *
+ * @author Z00000000Z
+ */
+fun writeModel(
+        simpleModel: SimpleModel,
+        file: Path,
+        isBinary: Boolean = true,
+        indent: String = "  ",
+        quantize: Boolean = false,
+        deltaParts: Boolean = false
+) = FileChannel.open(file, WRITE, CREATE, TRUNCATE_EXISTING).use {
+    if (isBinary) BinaryWriting(simpleModel, quantize, deltaParts).writeModelAsBinary(it)
+    else TextWriting(simpleModel, indent).writeModelAsText(Channels.newOutputStream(it))
+}
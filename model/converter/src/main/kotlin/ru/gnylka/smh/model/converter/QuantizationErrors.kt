@@ -0,0 +1,17 @@
+package ru.gnylka.smh.model.converter
+
+/**
+ * Maximum errors introduced by writing a model with quantized vertices
+ *
+ * @property maxPointError maximum difference between a point's component and its loaded value
+ * @property maxNormalAngle maximum angle (in degrees) between a normal and its loaded value
+ * @property maxTexCoordError maximum difference between a texture coordinate's component
+ * and its loaded value
+ *
+ * @author Z00000000Z
+ */
+data class QuantizationErrors(
+        val maxPointError: Float,
+        val maxNormalAngle: Float,
+        val maxTexCoordError: Float
+)
@@ -0,0 +1,74 @@
+package ru.gnylka.smh.model.converter.internal
+
+private const val MIN_CAPACITY = 16
+
+/*
+    Growable arrays of primitive values, so that values are not boxed
+    while the size of the result is unknown
+    (the initial capacity is exact when the size is known in advance)
+ */
+internal class FloatArrayBuilder internal constructor(initialCapacity: Int = MIN_CAPACITY) {
+
+    private var values = FloatArray(initialCapacity)
+
+    internal var size = 0
+        private set
+
+    internal operator fun get(index: Int) = values[index]
+
+    internal fun add(value: Float) {
+        ensureCapacity(size + 1)
+        values[size++] = value
+    }
+
+    internal fun add(source: FloatArray, offset: Int, length: Int) {
+        ensureCapacity(size + length)
+        System.arraycopy(source, offset, values, size, length)
+        size += length
+    }
+
+    // the array isn't copied if it is full, as it is reallocated by the next addition
+    internal fun toFloatArray() =
+            if (size == values.size) values
+            else values.copyOf(size)
+
+    private fun ensureCapacity(capacity: Int) {
+        if (capacity > values.size)
+            values = values.copyOf(maxOf(capacity, values.size * 2, MIN_CAPACITY))
+    }
+
+}
+
+internal class IntArrayBuilder internal constructor(initialCapacity: Int = MIN_CAPACITY) {
+
+    private var values = IntArray(initialCapacity)
+
+    internal var size = 0
+        private set
+
+    internal operator fun get(index: Int) = values[index]
+
+    internal operator fun set(index: Int, value: Int) {
+        values[index] = value
+    }
+
+    internal fun isEmpty() = size == 0
+
+    internal fun last() = values[size - 1]
+
+    internal fun add(value: Int) {
+        ensureCapacity(size + 1)
+        values[size++] = value
+    }
+
+    // the array isn't copied if it is full, as it is reallocated by the next addition
+    internal fun toIntArray() =
+            if (size == values.size) values
+            else values.copyOf(size)
+
+    private fun ensureCapacity(capacity: Int) {
+        if (capacity > values.size)
+            values = values.copyOf(maxOf(capacity, values.size * 2, MIN_CAPACITY))
+    }
+
+}
@@ -0,0 +1,149 @@
+package ru.gnylka.smh.model.converter.internal
+
+import java.io.UTFDataFormatException
+import java.nio.ByteBuffer
+import java.nio.channels.WritableByteChannel
+import java.util.*
+
+private const val MAX_UTF_LENGTH = 0xFFFF
+private const val BUFFER_CAPACITY = 64 * 1024
+
+/*
+    Writes values to the channel (big-endian) with the same encoding as DataOutputStream
+    through a buffer of a fixed capacity, which is flushed whenever it is full,
+    arrays are written in bulk using views of the buffer
+
+    Without a channel written values are only counted (arrays are not even copied),
+    so that sizes of sections can be known before they are written
+ */
+internal class BinaryOutput internal constructor(private val channel: WritableByteChannel?) {
+
+    private val buffer = ByteBuffer.allocate(BUFFER_CAPACITY)
+    private var flushedSize = 0L
+
+    // conversion of int values written as shorts
+    private val shorts = ShortArray(BUFFER_CAPACITY / Short.SIZE_BYTES)
+
+    internal val position get() = flushedSize + buffer.position()
+
+    internal fun writeByte(value: Int) {
+        ensureRemaining(1)
+        buffer.put(value.toByte())
+    }
+
+    internal fun writeShort(value: Int) {
+        ensureRemaining(Short.SIZE_BYTES)
+        buffer.putShort(value.toShort())
+    }
+
+    internal fun writeInt(value: Int) {
+        ensureRemaining(Int.SIZE_BYTES)
+        buffer.putInt(value)
+    }
+
+    // NaN is written as the canonical one (as DataOutputStream does)
+    internal fun writeFloat(value: Float) {
+        ensureRemaining(Float.SIZE_BYTES)
+        buffer.putInt(value.toBits())
+    }
+
+    internal fun writeFloats(values: FloatArray) = writeInChunks(values.size, Float.SIZE_BYTES) { offset, length ->
+        val start = buffer.position()
+        buffer.asFloatBuffer().put(values, offset, length)
+
+        // views keep bits of NaNs as they are
+        for (i in 0 until length)
+            if (values[offset + i].isNaN()) buffer.putInt(start + i * Float.SIZE_BYTES, Float.NaN.toBits())
+    }
+
+    // the lower 16 bits of every value are written
+    internal fun writeShorts(values: IntArray) = writeInChunks(values.size, Short.SIZE_BYTES) { offset, length ->
+        for (i in 0 until length) shorts[i] = values[offset + i].toShort()
+        buffer.asShortBuffer().put(shorts, 0, length)
+    }
+
+    internal fun writeInts(values: IntArray) = writeInChunks(values.size, Int.SIZE_BYTES) { offset, length ->
+        buffer.asIntBuffer().put(values, offset, length)
+    }
+
+    internal fun write(bytes: ByteArray) = writeInChunks(bytes.size, 1) { offset, length ->
+        buffer.put(bytes, offset, length)
+    }
+
+    /*
+        Modified UTF-8 preceded by its length in bytes (unsigned short):
+        '\u0000' is 2 bytes, supplementary characters are 2 surrogates of 3 bytes each
+     */
+    internal fun writeUTF(value: String) {
+        var length = 0
+        for (char in value)
+            length += when (char) {
+                in '\u0001'..'\u007F' -> 1
+                in '\u0000'..'\u07FF' -> 2
+                else -> 3
+            }
+        if (length > MAX_UTF_LENGTH)
+            throw UTFDataFormatException("encoded string too long: $length bytes")
+
+        writeShort(length)
+        for (char in value) {
+            ensureRemaining(3)
+            val code = char.toInt()
+            when (char) {
+                in '\u0001'..'\u007F' -> buffer.put(code.toByte())
+                in '\u0000'..'\u07FF' -> {
+                    buffer.put((0xC0 or (code shr 6)).toByte())
+                    buffer.put((0x80 or (code and 0x3F)).toByte())
+                }
+                else -> {
+                    buffer.put((0xE0 or (code shr 12)).toByte())
+                    buffer.put((0x80 or ((code shr 6) and 0x3F)).toByte())
+                    buffer.put((0x80 or (code and 0x3F)).toByte())
+                }
+            }
+        }
+    }
+
+    // zeros are written in place of skipped bytes
+    internal fun skip(size: Int) = writeInChunks(size, 1) { _, length ->
+        Arrays.fill(buffer.array(), buffer.position(), buffer.position() + length, 0)
+    }
+
+    /**
+     * Writes buffered data to the channel
+     */
+    internal fun flush() {
+        buffer.flip()
+        if (channel != null)
+            while (buffer.hasRemaining()) channel.write(buffer)
+
+        flushedSize += buffer.limit()
+        buffer.clear()
+    }
+
+    private fun ensureRemaining(size: Int) {
+        if (buffer.remaining() < size) flush()
+    }
+
+    /*
+        Values are written by parts fitting into the buffer,
+        writeChunk puts them starting from the current position (which is then moved past them)
+     */
+    private inline fun writeInChunks(size: Int, valueSize: Int, writeChunk: (offset: Int, length: Int) -> Unit) {
+        if (channel == null) {
+            flushedSize += size.toLong() * valueSize
+            return
+        }
+
+        var offset = 0
+        while (offset < size) {
+            ensureRemaining(valueSize)
+            val length = minOf(size - offset, buffer.remaining() / valueSize)
+            val start = buffer.position()
+            writeChunk(offset, length)
+            buffer.position(start + length * valueSize)
+            offset += length
+        }
+    }
+
+}
@@ -2,72 +2,247 @@ package ru.gnylka.smh.model.converter.internal
 
 import ru.gnylka.smh.model.data.*
 import ru.gnylka.smh.processing.data.MeshAttribute.NORMAL
-import java.io.DataOutputStream
 import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.nio.channels.Channels
+import java.nio.channels.FileChannel
+import java.nio.channels.WritableByteChannel
+import kotlin.math.abs
 
+// must be in sync with ModelLoader
+// (a model without sections directory can't start with these bytes:
+// it would be a single property containing byte 0xFF, which is not valid UTF-8)
+private val MAGIC = byteArrayOf(0x01, 0x00, 0x01, 0xFF.toByte())
+private const val FORMAT_VERSION = 1
+private const val FLAG_WIDE_INDICES = 0x01
+private const val FLAG_QUANTIZED = 0x02
+private const val FLAG_DELTA_PARTS = 0x04
+
+// the narrow encoding stores sizes as unsigned shorts and bytes and part indices as shorts
+private const val MAX_NARROW_COUNT = 0xFFFF
+private const val MAX_NARROW_SMALL_COUNT = 0xFF
+// the loader treats negative shorts as progressions, so bigger indices (and progressions)
+// can't be told apart from them
+private const val MAX_NARROW_INDEX = Short.MAX_VALUE.toInt()
+
+/*
+    Binary layout (numbers are big-endian, as written by DataOutputStream):
+
+    magic, format version (byte), format flags (byte)
+    sections count (int), offset and length (int, int) of every section
+    sections in the same order as in the directory:
+        global properties,
+        points keys and indices,
+        normals indices,
+        texture coordinates keys and indices,
+        points, normals, texture coordinates,
+        materials, nodes,
+        each part (as a separate section)
+
+    Offsets are counted from the beginning of the model
+
+    If FLAG_WIDE_INDICES is set, all sizes are ints and part indices are ints,
+    otherwise sizes are unsigned shorts (vertices, keys and faces) or unsigned bytes (the rest)
+    and part indices are shorts
+    The wide encoding is only used if the model doesn't fit into the narrow one
+
+    If FLAG_QUANTIZED is set, keys and indices are empty, points and texture coordinates
+    are stored as the minimum and the step of each component (floats) followed by
+    unsigned shorts, normals are stored as 2 shorts each (see Quantization)
+
+    If FLAG_DELTA_PARTS is set, each part index is the difference from the previous index
+    (the first one is counted from 0), zigzag-encoded and written as a varint
+    (7 bits per byte starting from the lowest ones, the high bit marks that more bytes follow)
+ */
 internal class BinaryWriting internal constructor(
-        private val simpleModel: SimpleModel
+        private val simpleModel: SimpleModel,
+        quantize: Boolean = false,
+        private val deltaParts: Boolean = false
 ) {
 
-    internal fun writeModelAsBinary(output: OutputStream): Unit = simpleModel.run {
-        val dataOutput = DataOutputStream(output)
+    private val wide = simpleModel.requiresWideIndices()
+    private val quantization = if (quantize) Quantization(simpleModel) else null
+
+    init {
+        // progressions can't be told apart from indices
+        require(!deltaParts || simpleModel.parts.all { part -> part.all { it >= 0 } }) {
+            DELTA_OPTIMIZED_PARTS
+        }
+    }
+
+    internal fun writeModelAsBinary(output: OutputStream) {
+        writeModelAsBinary(Channels.newChannel(output))
+    }
+
+    /*
+        Sizes of sections are counted first (without copying arrays),
+        so that the directory is written before them
+     */
+    internal fun writeModelAsBinary(channel: WritableByteChannel) {
+        val sections = getSections()
+
+        val counter = BinaryOutput(null)
+        writeHeader(sections.size, counter)
+        counter.skip(sections.size * 2 * Int.SIZE_BYTES)
+        val directory = writeSections(sections, counter)
+
+        val output = BinaryOutput(channel)
+        writeHeader(sections.size, output)
+        output.writeInts(directory)
+        writeSections(sections, output)
+        output.flush()
+    }
+
+    /*
+        Sections are written after the space reserved for the directory,
+        which is filled by seeking back when their sizes are known
+        (the channel must not be opened for appending)
+     */
+    internal fun writeModelAsBinary(channel: FileChannel) {
+        val sections = getSections()
+        val start = channel.position()
+
+        val output = BinaryOutput(channel)
+        writeHeader(sections.size, output)
+        val directoryOffset = output.position
+        output.skip(sections.size * 2 * Int.SIZE_BYTES)
+        val directory = writeSections(sections, output)
+        output.flush()
+
+        val end = channel.position()
+        val directoryBytes = ByteBuffer.allocate(directory.size * Int.SIZE_BYTES)
+        directoryBytes.asIntBuffer().put(directory)
+        channel.position(start + directoryOffset)
+        while (directoryBytes.hasRemaining()) channel.write(directoryBytes)
+        channel.position(end)
+    }
 
-        writeGlobalProperties(dataOutput)
-        writePointsKeys(dataOutput)
-        writePointsIndices(dataOutput)
-        writeNormalsIndices(dataOutput)
-        writeTexCoordsKeys(dataOutput)
-        writeTexCoordsIndices(dataOutput)
+    private fun getSections(): List<(BinaryOutput) -> Unit> = simpleModel.run {
+        listOf<(BinaryOutput) -> Unit>(
+                { writeGlobalProperties(it) },
+                {
+                    writePointsKeys(it)
+                    writePointsIndices(it)
+                },
+                { writeNormalsIndices(it) },
+                {
+                    writeTexCoordsKeys(it)
+                    writeTexCoordsIndices(it)
+                },
+                { writePoints(it) },
+                { writeNormals(it) },
+                { writeTexCoords(it) },
+                { writeMaterials(it) },
+                { writeNodes(it) }
+        ) + parts.indices.map { i ->
+            { output: BinaryOutput -> writePart(i, output) }
+        }
+    }
 
-        points.writeArrayWithSize(pointsCount.toShort(), dataOutput)
-        normals.writeArrayWithSize(normalsCount.toShort(), dataOutput)
-        texCoords.writeArrayWithSize(texCoordsCount.toShort(), dataOutput)
+    /**
+     * @return offset and length of every section (offsets are counted from the beginning of the model)
+     */
+    private fun writeSections(sections: List<(BinaryOutput) -> Unit>, output: BinaryOutput): IntArray {
+        val directory = IntArray(sections.size * 2)
+        sections.forEachIndexed { i, writeSection ->
+            val offset = output.position
+            writeSection(output)
+
+            require(output.position <= Int.MAX_VALUE) { MODEL_TOO_BIG.format(Int.MAX_VALUE) }
+            directory[i * 2] = offset.toInt()
+            directory[i * 2 + 1] = (output.position - offset).toInt()
+        }
+        return directory
+    }
 
-        writeParts(dataOutput)
-        writeMaterials(dataOutput)
-        writeNodes(dataOutput)
+    private fun writeHeader(sectionsCount: Int, output: BinaryOutput) {
+        output.write(MAGIC)
+        output.writeByte(FORMAT_VERSION)
+        var flags = 0
+        if (wide) flags = flags or FLAG_WIDE_INDICES
+        if (quantization != null) flags = flags or FLAG_QUANTIZED
+        if (deltaParts) flags = flags or FLAG_DELTA_PARTS
+        output.writeByte(flags)
+        output.writeInt(sectionsCount)
     }
 
-    private fun SimpleModel.writeGlobalProperties(output: DataOutputStream) {
-        output.writeByte(globalProperties.size)
+    private fun SimpleModel.requiresWideIndices(): Boolean =
+            maxOf(pointsCount, normalsCount, texCoordsCount) > MAX_NARROW_COUNT ||
+                    maxOf(pointsKeys.size, normalsIndices.size / NORMAL.size,
+                            texCoordsKeys.size) > MAX_NARROW_COUNT ||
+                    facesCount.any { it > MAX_NARROW_COUNT } ||
+                    // varints don't depend on the encoding of sizes
+                    !deltaParts && parts.any { part -> part.any { abs(it) > MAX_NARROW_INDEX } } ||
+                    // node parts store part index
+                    parts.size > MAX_NARROW_SMALL_COUNT + 1 ||
+                    maxOf(globalProperties.size, materials.size, nodes.size) >
+                            MAX_NARROW_SMALL_COUNT ||
+                    nodes.any { it.requiresWideIndices() }
+
+    private fun SimpleNode.requiresWideIndices(): Boolean =
+            maxOf(properties.size, nodeParts.size, children.size) > MAX_NARROW_SMALL_COUNT ||
+                    children.any { it.requiresWideIndices() }
+
+    private fun SimpleModel.writeGlobalProperties(output: BinaryOutput) {
+        writeSmallCount(globalProperties.size, output)
         globalProperties.forEach(output::writeUTF)
     }
 
-    private fun SimpleModel.writePointsKeys(output: DataOutputStream) {
-        pointsKeys.writeArrayWithSize(pointsKeys.size.toShort(), output)
+    private fun SimpleModel.writePointsKeys(output: BinaryOutput) {
+        pointsKeys.writeArrayWithSize(pointsKeys.size, output)
     }
 
-    private fun SimpleModel.writePointsIndices(output: DataOutputStream) {
+    private fun SimpleModel.writePointsIndices(output: BinaryOutput) {
         pointsIndices.writeArray(output)
     }
 
-    private fun SimpleModel.writeNormalsIndices(output: DataOutputStream) {
+    private fun SimpleModel.writeNormalsIndices(output: BinaryOutput) {
         val size = normalsIndices.size / NORMAL.size
-        normalsIndices.writeArrayWithSize(size.toShort(), output)
+        normalsIndices.writeArrayWithSize(size, output)
     }
 
-    private fun SimpleModel.writeTexCoordsKeys(output: DataOutputStream) {
-        texCoordsKeys.writeArrayWithSize(texCoordsKeys.size.toShort(), output)
+    private fun SimpleModel.writeTexCoordsKeys(output: BinaryOutput) {
+        texCoordsKeys.writeArrayWithSize(texCoordsKeys.size, output)
     }
 
-    private fun SimpleModel.writeTexCoordsIndices(output: DataOutputStream) {
+    private fun SimpleModel.writeTexCoordsIndices(output: BinaryOutput) {
         texCoordsIndices.writeArray(output)
     }
 
-    private fun SimpleModel.writeParts(output: DataOutputStream) {
-        output.writeByte(facesCount.size)
-        for (i in facesCount.indices) {
-            output.writeShort(facesCount[i])
-            parts[i].writeArray(output)
-        }
+    private fun SimpleModel.writePoints(output: BinaryOutput) =
+            if (quantization == null) points.writeArrayWithSize(pointsCount, output)
+            else quantization.points.writeQuantized(pointsCount, output)
+
+    private fun SimpleModel.writeNormals(output: BinaryOutput) =
+            if (quantization == null) normals.writeArrayWithSize(normalsCount, output)
+            else {
+                writeCount(normalsCount, output)
+                output.writeShorts(quantization.normals)
+            }
+
+    private fun SimpleModel.writeTexCoords(output: BinaryOutput) =
+            if (quantization == null) texCoords.writeArrayWithSize(texCoordsCount, output)
+            else quantization.texCoords.writeQuantized(texCoordsCount, output)
+
+    private fun QuantizedVertices.writeQuantized(count: Int, output: BinaryOutput) {
+        writeCount(count, output)
+        minimum.writeArray(output)
+        step.writeArray(output)
+        output.writeShorts(quantized)
     }
 
-    private fun SimpleModel.writeMaterials(output: DataOutputStream) {
-        output.writeByte(materials.size)
+    private fun SimpleModel.writePart(partIndex: Int, output: BinaryOutput) {
+        writeCount(facesCount[partIndex], output)
+        if (deltaParts) parts[partIndex].writeDeltaIndices(output)
+        else parts[partIndex].writeIndices(output)
+    }
+
+    private fun SimpleModel.writeMaterials(output: BinaryOutput) {
+        writeSmallCount(materials.size, output)
         materials.forEach { it.writeMaterial(output) }
     }
 
-    private fun SimpleMaterial.writeMaterial(output: DataOutputStream) {
+    private fun SimpleMaterial.writeMaterial(output: BinaryOutput) {
         ambient.writeColor(output)
         diffuse.writeColor(output)
         specular.writeColor(output)
@@ -77,43 +252,65 @@ internal class BinaryWriting internal constructor(
         output.writeUTF(specularTexture)
     }
 
-    private fun SimpleModel.writeNodes(output: DataOutputStream) {
-        output.writeByte(nodes.size)
+    private fun SimpleModel.writeNodes(output: BinaryOutput) {
+        writeSmallCount(nodes.size, output)
         nodes.forEach { it.writeNode(output) }
     }
 
-    private fun SimpleNode.writeNode(output: DataOutputStream) {
+    private fun SimpleNode.writeNode(output: BinaryOutput) {
         output.writeUTF(id)
         translation.writeArray(output)
         rotation.writeArray(output)
         scale.writeArray(output)
 
-        output.writeByte(properties.size)
+        writeSmallCount(properties.size, output)
         properties.forEach(output::writeUTF)
 
-        output.writeByte(nodeParts.size)
+        writeSmallCount(nodeParts.size, output)
         nodeParts.forEach {
-            output.writeByte(it.partIndex)
-            output.writeByte(it.materialIndex)
+            writeSmallCount(it.partIndex, output)
+            writeSmallCount(it.materialIndex, output)
         }
 
-        output.writeByte(children.size)
+        writeSmallCount(children.size, output)
         children.forEach { it.writeNode(output) }
     }
 
-    private fun ShortArray.writeArray(output: DataOutputStream) = forEach {
-        output.writeShort(it.toInt())
-    }
+    private fun IntArray.writeIndices(output: BinaryOutput) =
+            if (wide) output.writeInts(this)
+            else output.writeShorts(this)
 
-    private fun IntArray.writeArray(output: DataOutputStream) = forEach(output::writeInt)
+    private fun IntArray.writeDeltaIndices(output: BinaryOutput) {
+        var previous = 0
+        for (index in this) {
+            val delta = index - previous
+            var value = (delta shl 1) xor (delta shr 31)
+            while (value and 0x7F.inv() != 0) {
+                output.writeByte((value and 0x7F) or 0x80)
+                value = value ushr 7
+            }
+            output.writeByte(value)
+            previous = index
+        }
+    }
 
-    private fun FloatArray.writeArrayWithSize(size: Short, output: DataOutputStream) {
-        output.writeShort(size.toInt())
+    private fun FloatArray.writeArrayWithSize(size: Int, output: BinaryOutput) {
+        writeCount(size, output)
         writeArray(output)
     }
 
-    private fun FloatArray.writeArray(output: DataOutputStream) = forEach(output::writeFloat)
+    // sizes of vertices, keys and parts
+    private fun writeCount(count: Int, output: BinaryOutput) =
+            if (wide) output.writeInt(count)
+            else output.writeShort(count)
+
+    // sizes of properties, materials, nodes and node parts, indices of parts and materials
+    private fun writeSmallCount(count: Int, output: BinaryOutput) =
+            if (wide) output.writeInt(count)
+            else output.writeByte(count)
+
+    private fun FloatArray.writeArray(output: BinaryOutput) = output.writeFloats(this)
 
-    private fun IntArray.writeColor(output: DataOutputStream) = forEach(output::writeByte)
+    private fun IntArray.writeColor(output: BinaryOutput) = forEach(output::writeByte)
 
 }
@@ -17,14 +17,15 @@ internal class Data2Simple internal constructor(
 
     private var indicesOffset = 0
 
-    private val points = mutableListOf<Float>()
-    private val normals = mutableListOf<Float>()
-    private val textureCoords = mutableListOf<Float>()
+    private lateinit var points: FloatArrayBuilder
+    private lateinit var normals: FloatArrayBuilder
+    private lateinit var textureCoords: FloatArrayBuilder
 
-    private val faceIDs = mutableListOf<String>()
-    private val faces = mutableListOf<ShortArray>()
+    // index of the first part or material with the id
+    private val faceIDs = hashMapOf<String, Int>()
+    private val faces = mutableListOf<IntArray>()
 
-    private val materialIDs = mutableListOf<String>()
+    private val materialIDs = hashMapOf<String, Int>()
     private val materials = mutableListOf<SimpleMaterial>()
 
     private val nodes = mutableListOf<SimpleNode>()
@@ -46,10 +47,17 @@ internal class Data2Simple internal constructor(
 
     private fun convertModel() {
         val sortedMeshes = sortMeshes(model.meshes)
+
+        // vertex arrays are allocated once with the exact sizes
+        val verticesCount = sortedMeshes.sumBy { getVerticesCount(it) }
+        val texturedCount = sortedMeshes.filter { TEXCOORD in it.attributes }.sumBy { getVerticesCount(it) }
+        points = FloatArrayBuilder(verticesCount * POSITION.size)
+        normals = FloatArrayBuilder(verticesCount * NORMAL.size)
+        textureCoords = FloatArrayBuilder(texturedCount * TEXCOORD.size)
+
         for ((attributes, vertices, parts) in sortedMeshes) {
-            addPartsIndicesOffset(parts)
-            mergeVertices(vertices, attributes)
             readParts(parts)
+            mergeVertices(vertices, attributes)
         }
 
         readMaterials(model.materials)
@@ -81,33 +89,28 @@ internal class Data2Simple internal constructor(
         return posNorTexMeshes + posNorMeshes
     }
 
-    private fun addPartsIndicesOffset(parts: List<Part>) = parts.forEach {
-        for ((i, value) in it.indices.withIndex())
-            it.indices[i] = value + indicesOffset
-    }
+    private fun getVerticesCount(mesh: Mesh) =
+            mesh.vertices.size / getValuesPerVertex(mesh.attributes)
 
     private fun mergeVertices(vertices: FloatArray, attributes: List<MeshAttribute>) {
         val valuesPerVertex = getValuesPerVertex(attributes)
 
-        val pointsArray = getValuesForAttribute(POSITION, attributes, vertices, valuesPerVertex)
-        points.addAll(pointsArray)
-        indicesOffset += pointsArray.size / POSITION.size
+        addValuesForAttribute(POSITION, attributes, vertices, valuesPerVertex, points)
+        indicesOffset += vertices.size / valuesPerVertex
 
-        val normalsArray = getValuesForAttribute(NORMAL, attributes, vertices, valuesPerVertex)
-        normals.addAll(normalsArray)
+        addValuesForAttribute(NORMAL, attributes, vertices, valuesPerVertex, normals)
 
-        if (TEXCOORD in attributes) {
-            val texArray = getValuesForAttribute(TEXCOORD, attributes, vertices, valuesPerVertex)
-            textureCoords.addAll(texArray)
-        }
+        if (TEXCOORD in attributes)
+            addValuesForAttribute(TEXCOORD, attributes, vertices, valuesPerVertex, textureCoords)
     }
 
-    private fun getValuesForAttribute(
+    private fun addValuesForAttribute(
             attribute: MeshAttribute,
             attributes: List<MeshAttribute>,
             vertices: FloatArray,
-            valuesPerVertex: Int
-    ): List<Float> {
+            valuesPerVertex: Int,
+            destination: FloatArrayBuilder
+    ) {
         if (attribute !in attributes) throw NoSuchElementException(
                 ATTRIBUTE_NOT_FOUND.format(attribute, attributes.joinToString(", "))
         )
@@ -117,27 +120,21 @@ internal class Data2Simple internal constructor(
             if (attr == attribute) break
             else valuesOffset += attr.size
 
-        val size = attribute.size
-        val valuesSize = vertices.size / valuesPerVertex * size
-        return List(valuesSize) {
-            val index = it / size * valuesPerVertex + it % size + valuesOffset
-            vertices[index]
-        }
+        for (vertex in valuesOffset until vertices.size step valuesPerVertex)
+            destination.add(vertices, vertex, attribute.size)
     }
 
+    // indices of parts are offset by the amount of vertices of the previous meshes
     private fun readParts(parts: List<Part>): Unit = parts.forEach {
         (id, indices) ->
-        faceIDs.add(id)
-        val indicesArray = ShortArray(indices.size) {
-            indices[it].toShort()
-        }
-        faces.add(indicesArray)
+        faceIDs.putIfAbsent(id, faces.size)
+        faces.add(IntArray(indices.size) { indices[it] + indicesOffset })
     }
 
     private fun readMaterials(materials: List<Material>) = materials.forEach {
         (id, ambient, diffuse, specular, opacity, shininess,
                 diffuseTextures, specularTextures) ->
-        materialIDs.add(id)
+        materialIDs.putIfAbsent(id, this.materials.size)
         val simpleMaterial = SimpleMaterial(
                 colorToArray(ambient ?: Vector3d()),
                 colorToArray(diffuse ?: Vector3d()),
@@ -191,11 +188,8 @@ internal class Data2Simple internal constructor(
             indexOfOrThrow(materialIDs, nodePart.materialID)
     )
 
-    private fun <T> indexOfOrThrow(container: List<T>, element: T): Int {
-        val index = container.indexOf(element)
-        if (index == -1) throw NoSuchElementException(ELEMENT_NOT_FOUND.format(element))
-        else return index
-    }
+    private fun indexOfOrThrow(indices: Map<String, Int>, id: String) =
+            indices[id] ?: throw NoSuchElementException(ELEMENT_NOT_FOUND.format(id))
 
     private fun convertVector(translation: Vector3d) = translation.run {
         floatArrayOf(x.toFloat(), y.toFloat(), z.toFloat())
@@ -12,3 +12,9 @@ const val ILLEGAL_MESH_ATTRIBUTES = "Mesh must only contain attribute sets %s or
 const val ATTRIBUTE_NOT_FOUND = "%s not found in %s"
 const val MULTIPLE_TEXTURES = "Material mustn't contain multiple textures (got %s)"
 const val ELEMENT_NOT_FOUND = "Element %s not found"
+const val MODEL_TOO_BIG = "Binary model can't be bigger than %s bytes"
+const val DELTA_OPTIMIZED_PARTS = "Optimized parts can't be written with delta encoding"
+const val VERTEX_CACHE_OPTIMIZED_MODEL =
+        "Only model without optimizations can be reordered for vertex cache"
+const val QUANTIZED_OPTIMIZED_VERTICES =
+        "Only points, normals and texture coordinates without optimizations can be quantized"
@@ -0,0 +1,127 @@
+package ru.gnylka.smh.model.converter.internal
+
+private const val INITIAL_CAPACITY = 64
+
+/*
+    Open-addressing hash table of float groups (points, normals or texture coordinates)
+    Groups are compared by bits of their values as Float.equals does (NaN equals NaN, 0.0 != -0.0),
+    every distinct group gets an id in the order of first additions and is copied into the table
+ */
+internal class FloatGroupTable internal constructor(
+        private val groupSize: Int,
+        expectedSize: Int = 0
+) {
+
+    // id + 1 of the group in every slot or 0 if slot is empty
+    private var slots = IntArray(getCapacity(expectedSize))
+    private val groups = FloatArrayBuilder(expectedSize * groupSize)
+    private val counts = IntArrayBuilder(expectedSize)
+
+    internal val size get() = counts.size
+
+    /**
+     * Adds group of values starting from offset, if there is no such group,
+     * or increments the amount of its additions
+     *
+     * @return id of the group
+     */
+    internal fun add(values: FloatArray, offset: Int): Int {
+        val slot = findSlot(values, offset)
+        if (slots[slot] != 0) {
+            val id = slots[slot] - 1
+            counts[id] = counts[id] + 1
+            return id
+        }
+
+        val id = size
+        groups.add(values, offset, groupSize)
+        counts.add(1)
+        slots[slot] = id + 1
+        if (size * 2 > slots.size) grow()
+
+        return id
+    }
+
+    /**
+     * @return id of the group of values starting from offset or -1 if there is no such group
+     */
+    internal fun indexOf(values: FloatArray, offset: Int): Int =
+            slots[findSlot(values, offset)] - 1
+
+    internal operator fun contains(value: Float): Boolean {
+        assert(groupSize == 1)
+
+        // the same as hashGroup of a single value
+        val mask = slots.size - 1
+        var slot = hash(31 + value.toBits()) and mask
+        while (slots[slot] != 0) {
+            if (groups[slots[slot] - 1].toBits() == value.toBits()) return true
+            slot = (slot + 1) and mask
+        }
+
+        return false
+    }
+
+    /**
+     * @return the amount of times the group was added
+     */
+    internal fun getCount(id: Int) = counts[id]
+
+    internal fun copyGroup(id: Int, destination: FloatArrayBuilder) {
+        for (i in id * groupSize until (id + 1) * groupSize)
+            destination.add(groups[i])
+    }
+
+    private fun findSlot(values: FloatArray, offset: Int): Int {
+        val mask = slots.size - 1
+        var slot = hashGroup(values, offset) and mask
+        while (slots[slot] != 0 && !groupEquals(slots[slot] - 1, values, offset))
+            slot = (slot + 1) and mask
+
+        return slot
+    }
+
+    private fun grow() {
+        slots = IntArray(slots.size * 2)
+        val mask = slots.size - 1
+        for (id in 0 until size) {
+            var slot = hashGroup(id) and mask
+            while (slots[slot] != 0)
+                slot = (slot + 1) and mask
+            slots[slot] = id + 1
+        }
+    }
+
+    private fun groupEquals(id: Int, values: FloatArray, offset: Int): Boolean {
+        for (i in 0 until groupSize)
+            if (groups[id * groupSize + i].toBits() != values[offset + i].toBits()) return false
+        return true
+    }
+
+    private fun hashGroup(values: FloatArray, offset: Int): Int {
+        var hash = 1
+        for (i in offset until offset + groupSize)
+            hash = 31 * hash + values[i].toBits()
+        return hash(hash)
+    }
+
+    private fun hashGroup(id: Int): Int {
+        var hash = 1
+        for (i in id * groupSize until (id + 1) * groupSize)
+            hash = 31 * hash + groups[i].toBits()
+        return hash(hash)
+    }
+
+    private fun getCapacity(expectedSize: Int): Int {
+        var capacity = INITIAL_CAPACITY
+        while (capacity < expectedSize * 2) capacity *= 2
+        return capacity
+    }
+
+    // bits of floats are poorly distributed in the lower bits, so they are mixed
+    private fun hash(hash: Int): Int {
+        val mixed = hash * -0x61c88647
+        return mixed xor (mixed ushr 16)
+    }
+
+}
@@ -3,80 +3,79 @@ package ru.gnylka.smh.model.converter.internal
 import ru.gnylka.smh.model.data.SimpleModel
 import ru.gnylka.smh.processing.data.MeshAttribute.*
 import java.util.*
-import kotlin.collections.ArrayList
+import java.util.concurrent.ForkJoinTask
 
 internal class ModelOptimization internal constructor(
-        private val simpleModel: SimpleModel,
+        model: SimpleModel,
         private val optimizePoints: Boolean = true,
         private val indexPoints: Boolean = true,
         private val optimizeNormals: Boolean = true,
         private val indexNormals: Boolean = true,
         private val optimizeTexCoords: Boolean = true,
         private val indexTexCoords: Boolean = true,
-        private val optimizeParts: Boolean = true
+        private val optimizeParts: Boolean = true,
+        private val optimizeVertexCache: Boolean = false,
+        private val parallel: Boolean = false
 ) {
 
     private val MIN_REPEAT_COUNT = 3
     private val MIN_POINT_REPEAT_COUNT = MIN_REPEAT_COUNT + 1
     private val MIN_TEX_COORD_REPEAT_COUNT = MIN_REPEAT_COUNT + 1
 
+    // faces and vertices are reordered before any other optimization
+    private val simpleModel =
+            if (optimizeVertexCache) VertexCacheOptimization(model).optimizeModel()
+            else model
+
     private val points = simpleModel.points
-    private lateinit var newPoints: MutableList<Float>
-    // keep pointsIndices sorted for faster loading using binary search
-    private val pointsIndices = sortedMapOf<Float, List<Float>>()
+    private lateinit var newPoints: FloatArray
+    // keep pointsKeys sorted, older loaders look keys up using binary search
+    private var pointsKeys = FloatArray(0)
+    private var pointsIndices = FloatArray(0)
 
     private val normals = simpleModel.normals
-    private lateinit var newNormals: MutableList<Float>
-    private val normalsIndices = mutableListOf<List<Float>>()
+    private lateinit var newNormals: FloatArray
+    private var normalsIndices = FloatArray(0)
 
     private val texCoords = simpleModel.texCoords
-    private lateinit var newTexCoords: MutableList<Float>
-    // keep texCoordsIndices sorted for faster loading using binary search
-    private val texCoordsIndices = sortedMapOf<Float, List<Float>>()
+    private lateinit var newTexCoords: FloatArray
+    // keep texCoordsKeys sorted, older loaders look keys up using binary search
+    private var texCoordsKeys = FloatArray(0)
+    private var texCoordsIndices = FloatArray(0)
+
+    private val parts = simpleModel.parts
+    private val newParts = arrayOfNulls<IntArray>(parts.size)
 
+    // shared by points and texture coordinates passes, Random is thread-safe
     private val random = Random()
 
     internal fun optimizeModel(): SimpleModel {
-        // avoid boxing if everything is skipped
+        // avoid copying if everything else is skipped
         if (isSkipAll()) return simpleModel
 
-        newPoints =
-                if (optimizePoints) optimizePoints()
-                else points.toMutableList()
-        if (indexPoints) index(newPoints, POSITION.size,
-                MIN_POINT_REPEAT_COUNT, pointsIndices)
+        // passes share no state, each of them sets only its own properties
+        val passes = listOf(::processPoints, ::processNormals, ::processTexCoords) +
+                parts.indices.map { { newParts[it] = processPart(it) } }
 
-        newNormals =
-                if (optimizeNormals) optimizeNormals()
-                else normals.toMutableList()
-        if (indexNormals) indexNormals(newNormals, NORMAL.size, normalsIndices)
-
-        newTexCoords =
-                if (optimizeTexCoords) optimizeTexCoords()
-                else texCoords.toMutableList()
-        if (indexTexCoords) index(newTexCoords, TEXCOORD.size,
-                MIN_TEX_COORD_REPEAT_COUNT, texCoordsIndices)
-
-        val newParts =
-                if (optimizeParts) simpleModel.parts.map(::optimizeFaces)
-                else simpleModel.parts.toList()
+        if (parallel) ForkJoinTask.invokeAll(passes.map { ForkJoinTask.adapt(Runnable(it)) })
+        else passes.forEach { it() }
 
         return SimpleModel(
-                newPoints.toFloatArray(),
-                pointsIndices.keys.toFloatArray(),
-                pointsIndices.values.flatten().toFloatArray(),
+                newPoints,
+                pointsKeys,
+                pointsIndices,
                 simpleModel.pointsCount,
 
-                newNormals.toFloatArray(),
-                normalsIndices.flatten().toFloatArray(),
+                newNormals,
+                normalsIndices,
                 simpleModel.normalsCount,
 
-                newTexCoords.toFloatArray(),
-                texCoordsIndices.keys.toFloatArray(),
-                texCoordsIndices.values.flatten().toFloatArray(),
+                newTexCoords,
+                texCoordsKeys,
+                texCoordsIndices,
                 simpleModel.texCoordsCount,
 
-                newParts.toTypedArray(),
+                newParts.requireNoNulls(),
                 simpleModel.facesCount,
 
                 simpleModel.materials,
@@ -85,6 +84,48 @@ internal class ModelOptimization internal constructor(
         )
     }
 
+    private fun processPoints() {
+        newPoints =
+                if (optimizePoints) optimizePoints()
+                else points
+        if (indexPoints) {
+            val indexed = index(newPoints, POSITION.size, MIN_POINT_REPEAT_COUNT,
+                    { !it.isNaN() }, { generateKeys(newPoints, it) })
+            newPoints = indexed.values
+            pointsKeys = indexed.markers
+            pointsIndices = indexed.indices
+        }
+    }
+
+    private fun processNormals() {
+        newNormals =
+                if (optimizeNormals) optimizeNormals()
+                else normals
+        if (indexNormals) {
+            val indexed = index(newNormals, NORMAL.size, MIN_REPEAT_COUNT,
+                    { it in -1f..1f }, { count -> FloatArray(count) { -(it + 2).toFloat() } })
+            newNormals = indexed.values
+            normalsIndices = indexed.indices
+        }
+    }
+
+    private fun processTexCoords() {
+        newTexCoords =
+                if (optimizeTexCoords) optimizeTexCoords()
+                else texCoords
+        if (indexTexCoords) {
+            val indexed = index(newTexCoords, TEXCOORD.size, MIN_TEX_COORD_REPEAT_COUNT,
+                    { !it.isNaN() }, { generateKeys(newTexCoords, it) })
+            newTexCoords = indexed.values
+            texCoordsKeys = indexed.markers
+            texCoordsIndices = indexed.indices
+        }
+    }
+
+    private fun processPart(index: Int) =
+            if (optimizeParts) optimizeFaces(parts[index])
+            else parts[index]
+
     private fun isSkipAll() = !optimizePoints &&
             !indexPoints &&
             !optimizeNormals &&
@@ -102,21 +143,18 @@ internal class ModelOptimization internal constructor(
         If <number> is presented in pointsKeys array, then 3 values with indices x, x + 1, x + 2,
         where x is the index of <number> in pointsKeys array, must be taken from indices array
      */
-    private fun optimizePoints(): MutableList<Float> {
-        val newPoints = ArrayList<Float>(points.size)
-        var previous = floatArrayOf(Float.NaN, Float.NaN, Float.NaN)
-
-        for (i in points.indices step POSITION.size) {
-            val current = points.sliceArray(i until i + POSITION.size)
+    private fun optimizePoints(): FloatArray {
+        val newPoints = FloatArrayBuilder(points.size)
+        var previous = -1
 
-            if (current contentEquals previous) newPoints.add(Float.NaN)
+        for (i in points.indices step POSITION.size)
+            if (groupEquals(points, i, previous, POSITION.size)) newPoints.add(Float.NaN)
             else {
-                newPoints += current.toTypedArray()
-                previous = current
+                newPoints.add(points, i, POSITION.size)
+                previous = i
             }
-        }
 
-        return newPoints
+        return newPoints.toFloatArray()
     }
 
     /*
@@ -130,26 +168,7 @@ internal class ModelOptimization internal constructor(
         Number <= -2.0 indicates that 3 values with indices x, x + 1, x + 2,
         where x is abs(<number>) - 2, must be taken from indices array
      */
-    private fun optimizeNormals(): MutableList<Float> {
-        val newNormals = ArrayList<Float>(normals.size)
-        var previous = listOf(Float.NaN, Float.NaN, Float.NaN)
-        var equalsPreviousCount = 0
-
-        for (i in normals.indices step NORMAL.size) {
-            val current = normals.slice(i until i + NORMAL.size)
-
-            if (current == previous) equalsPreviousCount++
-            else {
-                writeDataRepeatedCount(newNormals, equalsPreviousCount)
-                equalsPreviousCount = 0
-                newNormals += current
-                previous = current
-            }
-        }
-
-        writeDataRepeatedCount(newNormals, equalsPreviousCount)
-        return newNormals
-    }
+    private fun optimizeNormals() = optimizeRepeatedValues(normals, NORMAL.size)
 
     /*
         X, Y
@@ -162,68 +181,113 @@ internal class ModelOptimization internal constructor(
         Number <= -2.0 indicates that 2 values with indices x, x + 1,
         where x is abs(<number>) - 2, must be taken from indices array
      */
-    private fun optimizeTexCoords(): MutableList<Float> {
-        val newTexCoords = ArrayList<Float>(texCoords.size)
-        var previous = listOf(Float.NaN, Float.NaN)
+    private fun optimizeTexCoords() = optimizeRepeatedValues(texCoords, TEXCOORD.size)
+
+    private fun optimizeRepeatedValues(values: FloatArray, groupSize: Int): FloatArray {
+        val newValues = FloatArrayBuilder(values.size)
+        var previous = -1
         var equalsPreviousCount = 0
 
-        for (i in texCoords.indices step TEXCOORD.size) {
-            val current = texCoords.slice(i until i + TEXCOORD.size)
-            if (current == previous) equalsPreviousCount++
+        for (i in values.indices step groupSize)
+            if (groupEquals(values, i, previous, groupSize)) equalsPreviousCount++
             else {
-                writeDataRepeatedCount(newTexCoords, equalsPreviousCount)
+                writeDataRepeatedCount(newValues, equalsPreviousCount)
                 equalsPreviousCount = 0
-                newTexCoords += current
-                previous = current
+                newValues.add(values, i, groupSize)
+                previous = i
             }
+
+        writeDataRepeatedCount(newValues, equalsPreviousCount)
+        return newValues.toFloatArray()
+    }
+
+    // values are compared as Float.equals does, the group before the first one consists of NaNs
+    private fun groupEquals(values: FloatArray, offset: Int, previous: Int, groupSize: Int): Boolean {
+        for (i in 0 until groupSize) {
+            val previousValue = if (previous == -1) Float.NaN else values[previous + i]
+            if (values[offset + i].toBits() != previousValue.toBits()) return false
         }
 
-        writeDataRepeatedCount(newTexCoords, equalsPreviousCount)
-        return newTexCoords
+        return true
     }
 
-    private fun index(
-            values: MutableList<Float>,
+    /*
+        Values are split into groups as the loader reads them:
+        a value which doesn't start a group (Float.NaN, repeat count or marker) is skipped,
+        otherwise it is the first value of a group of groupSize values
+
+        Groups found at least minRepeatCount times are numbered in the order of their
+        first occurrence and replaced with their markers in a single pass,
+        indices contains values of these groups
+     */
+    private inline fun index(
+            values: FloatArray,
             groupSize: Int,
             minRepeatCount: Int,
-            indicesDest: MutableMap<Float, List<Float>>
-    ) {
-        val usedValues = mutableListOf<Float>()
-        usedValues.addAll(values)
-        val indices = getRepeatedValues(values, groupSize) { !it.isNaN() }
-                .filterValues { it >= minRepeatCount }
-                .keys.map {
-                    val newUniqueValue = generateUniqueValue(usedValues)
-                    usedValues += newUniqueValue
-                    newUniqueValue to it
-                }.toMap(indicesDest)
-        val indicesKeys = indices.keys
-
-        indices.forEach { (replaceValue, valuesGroup) ->
-            replaceAllSubLists(values, valuesGroup, replaceValue) {
-                !it.isNaN() && it !in indicesKeys
+            isGroupStart: (Float) -> Boolean,
+            createMarkers: (repeatedCount: Int) -> FloatArray
+    ): IndexedValues {
+        val groups = FloatGroupTable(groupSize, values.size / groupSize)
+        var i = 0
+        while (i < values.size)
+            if (!isGroupStart(values[i])) i++
+            else {
+                groups.add(values, i)
+                i += groupSize
             }
-        }
+
+        val repeatedIndices = IntArray(groups.size) { -1 }
+        val indices = FloatArrayBuilder()
+        var repeatedCount = 0
+        for (id in 0 until groups.size)
+            if (groups.getCount(id) >= minRepeatCount) {
+                repeatedIndices[id] = repeatedCount++
+                groups.copyGroup(id, indices)
+            }
+
+        val markers = createMarkers(repeatedCount)
+        val newValues = FloatArrayBuilder(values.size)
+        i = 0
+        while (i < values.size)
+            if (!isGroupStart(values[i])) newValues.add(values[i++])
+            else {
+                val repeatedIndex = repeatedIndices[groups.indexOf(values, i)]
+                if (repeatedIndex == -1) newValues.add(values, i, groupSize)
+                else newValues.add(markers[repeatedIndex])
+                i += groupSize
+            }
+
+        return IndexedValues(newValues.toFloatArray(), markers, indices.toFloatArray())
     }
 
-    private fun indexNormals(
-            values: MutableList<Float>,
-            valuesGroupSize: Int,
-            indexDestination: MutableList<List<Float>>
-    ) {
-        val isNormal = { value: Float -> value in -1f..1f }
-
-        getRepeatedValues(values, valuesGroupSize, isNormal)
-                .filterValues { it >= MIN_REPEAT_COUNT }
-                .keys.also { indexDestination += it }
-                .forEachIndexed { i, subList ->
-                    replaceAllSubLists(values, subList, -(i + 2).toFloat(), isNormal)
-                }
+    /*
+        Keys are unique random values which values don't contain,
+        they are sorted and then assigned to groups in the order of their first occurrence
+     */
+    private fun generateKeys(values: FloatArray, count: Int): FloatArray {
+        // keys are less than Short.MAX_VALUE, so other values can't be equal to them
+        val usedValues = FloatGroupTable(1)
+        for (i in values.indices)
+            if (values[i] in 0f..Short.MAX_VALUE.toFloat()) usedValues.add(values, i)
+
+        val keys = FloatArray(count)
+        for (i in keys.indices) {
+            var uniqueValue: Float
+            do {
+                uniqueValue = random.nextFloat() * Short.MAX_VALUE
+            } while (uniqueValue in usedValues)
+
+            keys[i] = uniqueValue
+            usedValues.add(keys, i)
+        }
+
+        keys.sort()
+        return keys
     }
 
-    private fun writeDataRepeatedCount(container: MutableList<Float>, repeatedCount: Int) {
-        if (repeatedCount == 1) container += Float.NaN
-        else if (repeatedCount > 1) container += repeatedCount.toFloat()
+    private fun writeDataRepeatedCount(container: FloatArrayBuilder, repeatedCount: Int) {
+        if (repeatedCount == 1) container.add(Float.NaN)
+        else if (repeatedCount > 1) container.add(repeatedCount.toFloat())
     }
 
     /*
@@ -231,89 +295,35 @@ internal class ModelOptimization internal constructor(
         with progression 1
         If negative number is the first number, 0 is the beginning number
      */
-    private fun optimizeFaces(faces: ShortArray): ShortArray {
-        val newFaces = ArrayList<Short>(faces.size)
+    private fun optimizeFaces(faces: IntArray): IntArray {
+        val newFaces = IntArrayBuilder(faces.size)
         var previous = -1
 
         for (value in faces) {
             if (value - 1 != previous) {
                 addProgression(newFaces, previous)
-                newFaces += value
+                newFaces.add(value)
             }
-            previous = value.toInt()
+            previous = value
         }
         addProgression(newFaces, previous)
 
-        return newFaces.toShortArray()
+        return newFaces.toIntArray()
     }
 
-    private fun addProgression(faces: MutableList<Short>, previousValue: Int) {
+    private fun addProgression(faces: IntArrayBuilder, previousValue: Int) {
         val diff =
                 if (faces.isEmpty()) previousValue + 1
                 else previousValue - faces.last()
         if (diff > 0)
-            faces.add((-diff).toShort())
-    }
-
-    /*
-        List<Float> - group of values (size == valuesGroupSize)
-        Int - the amount of same groups found in values
-     */
-    private fun getRepeatedValues(
-            values: List<Float>,
-            valuesGroupSize: Int,
-            isNormalValue: (Float) -> Boolean
-    ): Map<List<Float>, Int> {
-        val repeatedValues = hashMapOf<List<Float>, Int>()
-        var i = 0
-        while (i < values.size)
-            if (!isNormalValue(values[i])) i++
-            else {
-                val valuesSubList = values.slice(i until i + valuesGroupSize)
-                repeatedValues.merge(valuesSubList, 1) { oldValue, _ -> oldValue + 1 }
-                i += valuesGroupSize
-            }
-
-        return repeatedValues
-    }
-
-    private fun generateUniqueValue(usedValues: List<Float>): Float {
-        var uniqueValue: Float
-        do {
-            uniqueValue = random.nextFloat() * Short.MAX_VALUE
-        } while (uniqueValue in usedValues)
-        return uniqueValue
-    }
-
-    /*
-        This function splits source into several subLists with the same size as subList
-        But it takes into account abnormal values through the use of isNormalValue predicate
-
-        For instance, tex coords array looks like this:
-        1. listOf(0.5f, 0.5f)
-        2. listOf(Float.NaN )
-        3. listOf(1f,   0.7f)
-        4. listOf(0.8f, 0.1f)
-
-        If subList is listOf(1f, 0.7f), then 3rd list will be replaced with replaceWith
-     */
-    private fun replaceAllSubLists(
-            source: MutableList<Float>,
-            subList: List<Float>,
-            replaceWith: Float,
-            isNormalValue: (Float) -> Boolean
-    ) {
-        var i = 0
-        while (i < source.size) {
-            if (!isNormalValue(source[i])) i++
-            else if (source.slice(i until i + subList.size) == subList) {
-                source[i] = replaceWith
-                repeat(subList.size - 1) {
-                    source.removeAt(i + 1)
-                }
-                i++
-            } else i += subList.size
-        }
+            faces.add(-diff)
     }
 
 }
+
+// values with repeated groups replaced with markers, indices contains values of these groups
+private class IndexedValues(
+        val values: FloatArray,
+        val markers: FloatArray,
+        val indices: FloatArray
+)
@@ -0,0 +1,189 @@
+package ru.gnylka.smh.model.converter.internal
+
+import ru.gnylka.smh.model.converter.QuantizationErrors
+import ru.gnylka.smh.model.data.SimpleModel
+import ru.gnylka.smh.processing.data.MeshAttribute.*
+import kotlin.math.*
+
+// must be in sync with ModelLoader
+private const val MAX_UNORM16 = 0xFFFF
+private const val MAX_SNORM16 = Short.MAX_VALUE.toInt()
+private const val SNORM16_SCALE = 1f / MAX_SNORM16
+
+/*
+    Vertices are decoded with the same float arithmetic as in ModelLoader,
+    so that the errors are the errors of the loaded values
+
+    Points and texture coordinates:
+        each component is an unsigned short q relative to the bounding box of the vertices,
+        component = minimum + q * step, where step = (maximum - minimum) / 65535
+
+    Normals (octahedral encoding):
+        normal is projected onto the octahedron |x| + |y| + |z| = 1,
+        the lower half (z < 0) is folded over the upper one,
+        x and y are scaled to [-32767; 32767]
+ */
+internal class Quantization internal constructor(simpleModel: SimpleModel) {
+
+    internal val points: QuantizedVertices
+    internal val normals: IntArray
+    internal val texCoords: QuantizedVertices
+
+    private val originalNormals = simpleModel.normals
+
+    init {
+        require(simpleModel.hasPlainVertices()) { QUANTIZED_OPTIMIZED_VERTICES }
+
+        points = QuantizedVertices(simpleModel.points, POSITION.size)
+        normals = quantizeNormals(simpleModel.normals)
+        texCoords = QuantizedVertices(simpleModel.texCoords, TEXCOORD.size)
+    }
+
+    internal fun getErrors() = QuantizationErrors(
+            points.getMaxError(),
+            getMaxNormalAngle(),
+            texCoords.getMaxError()
+    )
+
+    private fun SimpleModel.hasPlainVertices() =
+            pointsKeys.isEmpty() && points.size == pointsCount * POSITION.size &&
+                    normalsIndices.isEmpty() && normals.size == normalsCount * NORMAL.size &&
+                    texCoordsKeys.isEmpty() && texCoords.size == texCoordsCount * TEXCOORD.size
+
+    private fun quantizeNormals(normals: FloatArray): IntArray {
+        val quantized = IntArray(normals.size / NORMAL.size * 2)
+        val decoded = FloatArray(NORMAL.size)
+
+        for (i in 0 until normals.size / NORMAL.size) {
+            val x = normals[i * NORMAL.size]
+            val y = normals[i * NORMAL.size + 1]
+            val z = normals[i * NORMAL.size + 2]
+
+            val norm = abs(x) + abs(y) + abs(z)
+            if (norm == 0f) continue
+
+            var u = x / norm
+            var v = y / norm
+            if (z < 0f) {
+                val foldedU = (1f - abs(v)) * signNotZero(u)
+                v = (1f - abs(u)) * signNotZero(v)
+                u = foldedU
+            }
+
+            // rounding both values to the nearest is not always the closest direction,
+            // so all 4 neighbours are tried
+            val scaledU = u.coerceIn(-1f, 1f) * MAX_SNORM16
+            val scaledV = v.coerceIn(-1f, 1f) * MAX_SNORM16
+            var bestAngle = Double.POSITIVE_INFINITY
+            for (qu in intArrayOf(floor(scaledU).toInt(), ceil(scaledU).toInt()))
+                for (qv in intArrayOf(floor(scaledV).toInt(), ceil(scaledV).toInt())) {
+                    decodeNormal(qu, qv, decoded)
+                    val angle = getAngle(decoded, x, y, z)
+                    if (angle < bestAngle) {
+                        bestAngle = angle
+                        quantized[i * 2] = qu
+                        quantized[i * 2 + 1] = qv
+                    }
+                }
+        }
+
+        return quantized
+    }
+
+    private fun getMaxNormalAngle(): Float {
+        val decoded = FloatArray(NORMAL.size)
+        var maxAngle = 0.0
+
+        for (i in 0 until normals.size / 2) {
+            val x = originalNormals[i * NORMAL.size]
+            val y = originalNormals[i * NORMAL.size + 1]
+            val z = originalNormals[i * NORMAL.size + 2]
+            if (x == 0f && y == 0f && z == 0f) continue
+
+            decodeNormal(normals[i * 2], normals[i * 2 + 1], decoded)
+            maxAngle = max(maxAngle, getAngle(decoded, x, y, z))
+        }
+
+        return Math.toDegrees(maxAngle).toFloat()
+    }
+
+    // atan2 of the cross and the dot products is precise for small angles (unlike acos)
+    private fun getAngle(decoded: FloatArray, x: Float, y: Float, z: Float): Double {
+        val dx = decoded[0].toDouble()
+        val dy = decoded[1].toDouble()
+        val dz = decoded[2].toDouble()
+
+        val crossX = dy * z - dz * y
+        val crossY = dz * x - dx * z
+        val crossZ = dx * y - dy * x
+        val cross = sqrt(crossX * crossX + crossY * crossY + crossZ * crossZ)
+        val dot = dx * x + dy * y + dz * z
+
+        return atan2(cross, dot)
+    }
+
+    // the same as ModelLoader does
+    private fun decodeNormal(qu: Int, qv: Int, destination: FloatArray) {
+        var x = max(qu, -MAX_SNORM16) * SNORM16_SCALE
+        var y = max(qv, -MAX_SNORM16) * SNORM16_SCALE
+        val z = 1f - abs(x) - abs(y)
+
+        val fold = max(-z, 0f)
+        x -= Math.copySign(fold, x)
+        y -= Math.copySign(fold, y)
+
+        val scale = 1f / sqrt(x * x + y * y + z * z)
+        destination[0] = x * scale
+        destination[1] = y * scale
+        destination[2] = z * scale
+    }
+
+    private fun signNotZero(value: Float) = if (value >= 0f) 1f else -1f
+
+}
+
+internal class QuantizedVertices internal constructor(
+        private val values: FloatArray,
+        private val vertexSize: Int
+) {
+
+    internal val minimum = FloatArray(vertexSize) { Float.POSITIVE_INFINITY }
+    internal val step = FloatArray(vertexSize)
+    internal val quantized = IntArray(values.size)
+
+    init {
+        val maximum = FloatArray(vertexSize) { Float.NEGATIVE_INFINITY }
+        values.forEachIndexed { i, value ->
+            val component = i % vertexSize
+            minimum[component] = min(minimum[component], value)
+            maximum[component] = max(maximum[component], value)
+        }
+
+        for (component in 0 until vertexSize) {
+            if (values.isEmpty()) minimum[component] = 0f
+            else step[component] = (maximum[component] - minimum[component]) / MAX_UNORM16
+        }
+
+        values.forEachIndexed { i, value ->
+            val component = i % vertexSize
+            if (step[component] > 0f) {
+                val scaled = ((value - minimum[component]) / step[component]).roundToInt()
+                quantized[i] = scaled.coerceIn(0, MAX_UNORM16)
+            }
+        }
+    }
+
+    // the same as ModelLoader does
+    internal fun dequantize(index: Int): Float {
+        val component = index % vertexSize
+        return minimum[component] + quantized[index] * step[component]
+    }
+
+    internal fun getMaxError(): Float {
+        var maxError = 0f
+        for (i in values.indices)
+            maxError = max(maxError, abs(dequantize(i) - values[i]))
+        return maxError
+    }
+
+}
@@ -0,0 +1,246 @@
+package ru.gnylka.smh.model.converter.internal
+
+import java.io.Writer
+import java.text.DecimalFormatSymbols
+import java.util.*
+
+private const val FRACTION_DIGITS = 6
+private const val FRACTION_SCALE = 1_000_000L
+
+// floats below 2^24 (biased exponent) are rounded exactly with long arithmetic
+private const val MAX_EXACT_EXPONENT = 127 + 24
+private const val MANTISSA_BITS = 23
+
+/*
+    Writes text to the writer as it is produced, so that the whole document is not kept in memory
+
+    Text of indented blocks is indented line by line in the same way as String.indentBy does
+    (line breaks are replaced with '\n', blank lines are not indented and the indent
+    at the end of a block is removed), blocks can be nested
+
+    Numbers are formatted in the same way as String.format does with "%.6f" and "%d"
+    in the default locale, but without parsing formats and creating strings for numbers
+ */
+internal class TextOutput internal constructor(
+        private val writer: Writer,
+        private val indent: String
+) {
+
+    private val symbols = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT))
+    private val zeroDigit = symbols.zeroDigit
+    private val decimalSeparator = symbols.decimalSeparator
+
+    private val blocks = ArrayList<IndentedBlock>()
+    private val number = StringBuilder()
+    private var chars = CharArray(64)
+
+    internal fun write(text: CharSequence) {
+        if (blocks.isEmpty()) writeToWriter(text)
+        else blocks.last().write(text)
+    }
+
+    internal fun write(char: Char) {
+        if (blocks.isEmpty()) writer.write(char.toInt())
+        else blocks.last().write(char)
+    }
+
+    internal fun writeLine(text: CharSequence) {
+        write(text)
+        write('\n')
+    }
+
+    internal fun writeLine() = write('\n')
+
+    internal fun indented(writeBlock: () -> Unit) {
+        blocks += IndentedBlock(blocks.lastOrNull())
+        writeBlock()
+        blocks.removeAt(blocks.size - 1).close()
+    }
+
+    /**
+     * Writes value as "%.6f" format does
+     *
+     * @param width minimum length of the value, it is padded with spaces
+     * @param leftAligned whether spaces are added after the value ('-' flag)
+     * @param spaceSign whether a space is written in place of the sign of positive values (' ' flag)
+     */
+    internal fun writeFloat(value: Float, width: Int, leftAligned: Boolean = false, spaceSign: Boolean = false) {
+        number.setLength(0)
+
+        val rounded = roundFraction(value)
+        if (rounded < 0) number.append(formatFloat(value, spaceSign))
+        else {
+            appendSign(value.toBits() < 0, spaceSign)
+            appendDigits(rounded / FRACTION_SCALE, 1)
+            number.append(decimalSeparator)
+            appendDigits(rounded % FRACTION_SCALE, FRACTION_DIGITS)
+        }
+
+        writeNumber(width, leftAligned)
+    }
+
+    /**
+     * Writes value as "%d" format does, see [writeFloat]
+     */
+    internal fun writeInt(value: Int, width: Int, leftAligned: Boolean = false, spaceSign: Boolean = false) {
+        number.setLength(0)
+        appendSign(value < 0, spaceSign)
+        appendDigits(abs(value.toLong()), 1)
+        writeNumber(width, leftAligned)
+    }
+
+    private fun appendSign(negative: Boolean, spaceSign: Boolean) {
+        if (negative) number.append('-')
+        else if (spaceSign) number.append(' ')
+    }
+
+    private fun appendDigits(value: Long, minDigits: Int) {
+        val digits = maxOf(getDigitsCount(value), minDigits)
+        val start = number.length
+        number.setLength(start + digits)
+
+        var rest = value
+        for (i in start + digits - 1 downTo start) {
+            number.setCharAt(i, zeroDigit + (rest % 10).toInt())
+            rest /= 10
+        }
+    }
+
+    private fun writeNumber(width: Int, leftAligned: Boolean) {
+        val padding = width - number.length
+        if (!leftAligned) repeat(padding) { write(' ') }
+        write(number)
+        if (leftAligned) repeat(padding) { write(' ') }
+    }
+
+    private fun writeToWriter(text: CharSequence) {
+        if (text is String) {
+            writer.write(text)
+            return
+        }
+
+        if (chars.size < text.length) chars = CharArray(text.length * 2)
+        (text as StringBuilder).getChars(0, text.length, chars, 0)
+        writer.write(chars, 0, text.length)
+    }
+
+    // the current line is kept until its end, as blank lines are not indented
+    private inner class IndentedBlock(private val parent: IndentedBlock?) {
+
+        private val line = StringBuilder()
+        private var afterCarriageReturn = false
+
+        fun write(text: CharSequence) {
+            for (i in text.indices) write(text[i])
+        }
+
+        // "\r\n", "\n" and "\r" are line breaks
+        fun write(char: Char) {
+            if (afterCarriageReturn) {
+                afterCarriageReturn = false
+                if (char == '\n') return
+            }
+
+            when (char) {
+                '\n' -> endLine()
+                '\r' -> {
+                    endLine()
+                    afterCarriageReturn = true
+                }
+                else -> line.append(char)
+            }
+        }
+
+        // the last line is written without the indent at its end
+        fun close() {
+            if (line.isBlank()) {
+                if (line.length < indent.length) line.setLength(0)
+                else if (line.endsWith(indent)) line.setLength(line.length - indent.length)
+            } else {
+                line.insert(0, indent)
+                if (line.endsWith(indent)) line.setLength(line.length - indent.length)
+            }
+
+            writeToParent(line)
+        }
+
+        private fun endLine() {
+            if (line.isBlank()) {
+                if (line.length < indent.length) writeToParent(indent)
+                else writeToParent(line)
+            } else {
+                writeToParent(indent)
+                writeToParent(line)
+            }
+
+            if (parent == null) writer.write('\n'.toInt())
+            else parent.write('\n')
+            line.setLength(0)
+        }
+
+        private fun writeToParent(text: CharSequence) {
+            if (parent == null) writeToWriter(text)
+            else parent.write(text)
+        }
+
+    }
+
+}
+
+/**
+ * @return length of value formatted with "%.6f" (with ' ' flag if spaceSign is true)
+ */
+internal fun getFloatLength(value: Float, spaceSign: Boolean = false): Int {
+    val rounded = roundFraction(value)
+    if (rounded < 0) return formatFloat(value, spaceSign).length
+
+    val sign = if (value.toBits() < 0 || spaceSign) 1 else 0
+    return sign + getDigitsCount(rounded / FRACTION_SCALE) + 1 + FRACTION_DIGITS
+}
+
+/**
+ * @return length of value formatted with "%d" (with ' ' flag if spaceSign is true)
+ */
+internal fun getIntLength(value: Int, spaceSign: Boolean = false): Int {
+    val sign = if (value < 0 || spaceSign) 1 else 0
+    return sign + getDigitsCount(abs(value.toLong()))
+}
+
+private fun getDigitsCount(value: Long): Int {
+    var rest = value / 10
+    var count = 1
+    while (rest != 0L) {
+        rest /= 10
+        count++
+    }
+    return count
+}
+
+private fun abs(value: Long) = if (value < 0) -value else value
+
+/*
+    Absolute value multiplied by 10^6 and rounded half up as "%.6f" does
+    (the value of a float is exact, so it can't be closer to a half than digits used by the format)
+    or -1 if the value is too big or not finite, such values are formatted by String.format
+ */
+private fun roundFraction(value: Float): Long {
+    val bits = value.toBits()
+    val exponent = (bits ushr MANTISSA_BITS) and 0xFF
+    if (exponent >= MAX_EXACT_EXPONENT) return -1
+
+    val mantissa = bits and ((1 shl MANTISSA_BITS) - 1)
+    val significand =
+            if (exponent == 0) mantissa
+            else mantissa or (1 shl MANTISSA_BITS)
+    val shift = MAX_EXACT_EXPONENT - 1 - maxOf(exponent, 1)
+
+    val scaled = significand * FRACTION_SCALE
+    if (shift == 0) return scaled
+    if (shift >= Long.SIZE_BITS - 1) return 0
+
+    val remainder = scaled and ((1L shl shift) - 1)
+    return (scaled shr shift) + if (remainder >= 1L shl (shift - 1)) 1 else 0
+}
+
+private fun formatFloat(value: Float, spaceSign: Boolean) =
+        (if (spaceSign) "% .6f" else "%.6f").format(value)
@@ -2,41 +2,44 @@ package ru.gnylka.smh.model.converter.internal
 
 import ru.gnylka.smh.model.data.*
 import ru.gnylka.smh.processing.data.MeshAttribute.*
-import ru.gnylka.smh.utils.*
+import java.io.BufferedWriter
 import java.io.OutputStream
-import java.io.PrintWriter
+import java.io.OutputStreamWriter
 import kotlin.math.abs
 import kotlin.math.max
 
+// separator of the previous value is written with a comma if it isn't the last one
+private const val NO_SEPARATOR = '\u0000'
+
 internal class TextWriting internal constructor(
         private val simpleModel: SimpleModel,
         private val indent: String
 ) {
 
-    private enum class PreviousValue {
-        COMMON, REPEATED, INDEXED
-    }
-
-    private val sb = StringBuilder()
+    private lateinit var output: TextOutput
 
-    private val maxPoint = maxFloatLength(simpleModel.points + simpleModel.pointsIndices)
+    private val maxPoint = maxFloatLength(simpleModel.points, simpleModel.pointsIndices)
     private val maxPointKey = maxFloatLength(simpleModel.pointsKeys, positive = true)
-    private val maxNormal = maxFloatLength(simpleModel.normals + simpleModel.normalsIndices)
+    private val maxNormal = maxFloatLength(simpleModel.normals, simpleModel.normalsIndices)
     private val maxNormalKey = max(0, simpleModel.normalsIndices.size / NORMAL.size - 1)
             .toString().length
-    private val maxTexCoord = maxFloatLength(simpleModel.texCoords + simpleModel.texCoordsIndices)
+    private val maxTexCoord = maxFloatLength(simpleModel.texCoords, simpleModel.texCoordsIndices)
     private val maxTexCoordKey = maxFloatLength(simpleModel.texCoordsKeys, positive = true)
 
+    private val pointsKeysTable = createKeysTable(simpleModel.pointsKeys)
+    private val texCoordsKeysTable = createKeysTable(simpleModel.texCoordsKeys)
+
     internal fun writeModelAsText(output: OutputStream) {
-        val writer = PrintWriter(output)
-        val data = simpleModel.getData()
-        writer.println(data)
+        val writer = BufferedWriter(OutputStreamWriter(output))
+        this.output = TextOutput(writer, indent)
+
+        simpleModel.writeData()
+
+        writer.write(System.lineSeparator())
         writer.flush()
     }
 
-    private fun SimpleModel.getData(): String {
-        sb.clear()
-
+    private fun SimpleModel.writeData() {
         writeGlobalProperties()
 
         writePointsIndices()
@@ -50,69 +53,74 @@ internal class TextWriting internal constructor(
         writeParts()
         writeMaterials()
         writeNodes()
-
-        return sb.toString()
     }
 
     private fun SimpleModel.writeGlobalProperties() {
-        sb + "Global properties (size: " + globalProperties.size += "):"
-        sb + getProperties(globalProperties).indentBy(indent)
-        sb.appendLine()
+        output.writeLine("Global properties (size: ${globalProperties.size}):")
+        output.indented { writeProperties(globalProperties) }
+        output.writeLine()
     }
 
     private fun SimpleModel.writePointsIndices() {
-        sb + "Points indices (size: " + pointsKeys.size += "):"
+        output.writeLine("Points indices (size: ${pointsKeys.size}):")
 
-        val l = maxPoint
-        for (i in pointsKeys.indices)
-            sb.appendf("%s%-${maxPointKey}.6f = [% ${l}.6f, % ${l}.6f, % ${l}.6f]%n",
-                    indent, pointsKeys[i],
-                    pointsIndices[i * 3 + 0],
-                    pointsIndices[i * 3 + 1],
-                    pointsIndices[i * 3 + 2])
+        for (i in pointsKeys.indices) {
+            output.write(indent)
+            output.writeFloat(pointsKeys[i], maxPointKey, leftAligned = true)
+            writeIndexedValues(pointsIndices, i, POSITION.size, maxPoint)
+        }
 
-        sb.appendLine()
+        output.writeLine()
     }
 
     private fun SimpleModel.writeNormalsIndices() {
         val size = normalsIndices.size / NORMAL.size
-        sb + "Normals indices (size: " + size += "):"
+        output.writeLine("Normals indices (size: $size):")
 
-        val l = maxNormal
-        for (i in 0 until size)
-            sb.appendf("%s%-${maxNormalKey}i = [% ${l}.6f, % ${l}.6f, % ${l}.6f]%n",
-                    indent, i,
-                    normalsIndices[i * 3 + 0],
-                    normalsIndices[i * 3 + 1],
-                    normalsIndices[i * 3 + 2])
+        for (i in 0 until size) {
+            output.write(indent)
+            output.writeInt(i, maxNormalKey, leftAligned = true)
+            writeIndexedValues(normalsIndices, i, NORMAL.size, maxNormal)
+        }
 
-        sb.appendLine()
+        output.writeLine()
     }
 
     private fun SimpleModel.writeTexCoordsIndices() {
-        sb + "Texture coordinates indices (size: " + texCoordsIndices.size += "):"
+        output.writeLine("Texture coordinates indices (size: ${texCoordsIndices.size}):")
 
-        val l = maxTexCoord
-        for (i in texCoordsKeys.indices)
-            sb.appendf("%s%-${maxTexCoordKey}.6f = [% ${l}.6f, % ${l}.6f]%n",
-                    indent, texCoordsKeys[i],
-                    texCoordsIndices[i * 2 + 0],
-                    texCoordsIndices[i * 2 + 1])
+        for (i in texCoordsKeys.indices) {
+            output.write(indent)
+            output.writeFloat(texCoordsKeys[i], maxTexCoordKey, leftAligned = true)
+            writeIndexedValues(texCoordsIndices, i, TEXCOORD.size, maxTexCoord)
+        }
 
-        sb.appendLine()
+        output.writeLine()
+    }
+
+    // " = [values]" and the platform line separator (as "%n" does)
+    private fun writeIndexedValues(values: FloatArray, index: Int, size: Int, maxLength: Int) {
+        output.write(" = [")
+        for (i in index * size until (index + 1) * size) {
+            if (i != index * size) output.write(", ")
+            output.writeFloat(values[i], maxLength, spaceSign = true)
+        }
+        output.write("]")
+        output.write(System.lineSeparator())
     }
 
     private fun SimpleModel.writePoints() {
-        sb + "Points (size: " + pointsCount + ", values: " + pointsCount * POSITION.size += "):"
-        sb += writeArray(points, POSITION.size, maxPoint, maxPointKey,
+        output.writeLine("Points (size: $pointsCount, values: ${pointsCount * POSITION.size}):")
+        writeArray(points, POSITION.size, maxPoint, maxPointKey,
                 { value -> if (value.isNaN()) 1 else 0 },
-                { value -> if (pointsKeys.any { it == value }) value else Float.NaN }
+                { value -> if (isKey(pointsKeysTable, value)) value else Float.NaN }
         )
+        output.writeLine()
     }
 
     private fun SimpleModel.writeNormals() {
-        sb + "Normals (size: " + normalsCount + ", values: " + normalsCount * NORMAL.size += "):"
-        sb += writeArray(normals, NORMAL.size, maxNormal, maxNormalKey, { value ->
+        output.writeLine("Normals (size: $normalsCount, values: ${normalsCount * NORMAL.size}):")
+        writeArray(normals, NORMAL.size, maxNormal, maxNormalKey, { value ->
             if (value.isNaN()) 1
             else if (value > 1.0) value.toInt()
             else 0
@@ -120,44 +128,49 @@ internal class TextWriting internal constructor(
             if (value < -1.0) abs(value) - 2
             else Float.NaN
         })
+        output.writeLine()
     }
 
     private fun SimpleModel.writeTexCoords() {
-        sb + "Texture coordinates (size: " + texCoordsCount + ", values: " +
-                texCoordsCount * TEXCOORD.size += "):"
-        sb += writeArray(texCoords, TEXCOORD.size, maxTexCoord, maxTexCoordKey,
+        output.writeLine("Texture coordinates (size: $texCoordsCount, values: " +
+                "${texCoordsCount * TEXCOORD.size}):")
+        writeArray(texCoords, TEXCOORD.size, maxTexCoord, maxTexCoordKey,
                 { value -> if (value.isNaN()) 1 else 0 },
-                { value -> if (texCoordsKeys.any { it == value }) value else Float.NaN }
+                { value -> if (isKey(texCoordsKeysTable, value)) value else Float.NaN }
         )
+        output.writeLine()
     }
 
     private fun SimpleModel.writeParts() {
-        sb + "Parts (size: " + facesCount.size += "):"
-        for ((i, count) in facesCount.withIndex()) {
-            val str = "Part[$i] (size: $count, values: ${count * 3}):\n" +
-                    getPartFaces(parts[i]).indentBy(indent)
-            sb + str.indentBy(indent)
-
+        output.writeLine("Parts (size: ${facesCount.size}):")
+        for ((i, count) in facesCount.withIndex()) output.indented {
+            output.writeLine("Part[$i] (size: $count, values: ${count * 3}):")
+            output.indented { writePartFaces(parts[i]) }
         }
-        sb.appendLine()
+        output.writeLine()
     }
 
-    private fun getPartFaces(partFaces: ShortArray): String {
-        if (partFaces.isEmpty()) return "\n"
+    private fun writePartFaces(partFaces: IntArray) {
+        if (partFaces.isEmpty()) {
+            output.writeLine()
+            return
+        }
 
-        val strB = StringBuilder()
         val indexLen = getIndexLength(partFaces)
-        val formatStr = "% ${indexLen}d"
 
         var offset = 0
         var previousNegative = false
+        var separator = NO_SEPARATOR
 
-        for ((i, value) in partFaces.withIndex()) {
+        for (i in partFaces.indices) {
+            val value = partFaces[i]
             val rem = (i + offset) % 3
+            separator = writeSeparator(separator)
             if (value < 0) {
                 previousNegative = true
-                if (rem != 0) strB.appendLine()
-                strB + formatStr.format(value) += ','
+                if (rem != 0) output.writeLine()
+                output.writeInt(value, indexLen, spaceSign = true)
+                output.writeLine(",")
                 offset += -value - 1
                 offset %= 3
             } else {
@@ -165,159 +178,168 @@ internal class TextWriting internal constructor(
                     // indexLen - the length of the string of the biggest index
                     // + 1 because in "% ${indexLen}d" a whitespace is used
                     // + 1 for additional whitespace that replaces comma
-                    strB + " ".repeat((indexLen + 2) * (rem))
+                    repeat((indexLen + 2) * (rem)) { output.write(' ') }
                     previousNegative = false
                 }
 
-                strB + formatStr.format(value) + ',' +
+                output.writeInt(value, indexLen, spaceSign = true)
+                separator =
                         if (rem == 2) '\n'
                         else ' '
             }
         }
 
-        if (partFaces.isNotEmpty() && !previousNegative)
-            strB.removeLast(",")
-
-        return strB.toString()
+        if (separator != NO_SEPARATOR) output.write(separator)
     }
 
     private fun SimpleModel.writeMaterials() {
-        sb + "Materials (size: " + materials.size += "):"
-        for ((i, material) in materials.withIndex()) {
-            val str = "Material[$i]:\n" + material.getMaterial().indentBy(indent)
-            sb + str.indentBy(indent)
+        output.writeLine("Materials (size: ${materials.size}):")
+        for ((i, material) in materials.withIndex()) output.indented {
+            output.writeLine("Material[$i]:")
+            output.indented { material.writeMaterial() }
         }
-        sb.appendLine()
+        output.writeLine()
     }
 
-    private fun SimpleMaterial.getMaterial(): String {
-        val strB = StringBuilder()
-        strB + "Ambient: " += ambient.joinToString(", ", "[", "]")
-        strB + "Diffuse: " += diffuse.joinToString(", ", "[", "]")
-        strB + "Specular: " += specular.joinToString(", ", "[", "]")
-        strB + "Opacity: " += opacity
-        strB + "Shininess: " += shininess
-        strB + "Diffuse texture: " +=
+    private fun SimpleMaterial.writeMaterial() {
+        output.writeLine("Ambient: " + ambient.joinToString(", ", "[", "]"))
+        output.writeLine("Diffuse: " + diffuse.joinToString(", ", "[", "]"))
+        output.writeLine("Specular: " + specular.joinToString(", ", "[", "]"))
+        output.writeLine("Opacity: $opacity")
+        output.writeLine("Shininess: $shininess")
+        output.writeLine("Diffuse texture: " +
                 if (diffuseTexture.isEmpty()) "<none>"
-                else diffuseTexture
-        strB + "Specular texture: " +=
+                else diffuseTexture)
+        output.writeLine("Specular texture: " +
                 if (specularTexture.isEmpty()) "<none>"
-                else specularTexture
-        return strB.toString()
+                else specularTexture)
     }
 
     private fun SimpleModel.writeNodes() {
-        sb + "Nodes (size: " + nodes.size += "):"
-        for ((i, node) in nodes.withIndex()) {
-            val str = "Node[$i]:\n" + node.getNode().indentBy(indent)
-            sb + str.indentBy(indent)
+        output.writeLine("Nodes (size: ${nodes.size}):")
+        for ((i, node) in nodes.withIndex()) output.indented {
+            output.writeLine("Node[$i]:")
+            output.indented { node.writeNode() }
         }
-        sb.appendLine()
+        output.writeLine()
     }
 
-    private fun SimpleNode.getNode(): String {
-        val strB = StringBuilder()
-
-        strB + "ID: " += id
+    private fun SimpleNode.writeNode() {
+        output.writeLine("ID: $id")
 
-        strB + "Translation: " += translation.joinToString(", ", "[", "]")
-        strB + "Rotation: " += rotation.joinToString(", ", "[", "]")
-        strB + "Scale: " += scale.joinToString(", ", "[", "]")
+        output.writeLine("Translation: " + translation.joinToString(", ", "[", "]"))
+        output.writeLine("Rotation: " + rotation.joinToString(", ", "[", "]"))
+        output.writeLine("Scale: " + scale.joinToString(", ", "[", "]"))
 
-        strB + "Properties (size: " + properties.size += "):"
-        strB + getProperties(properties).indentBy(indent)
+        output.writeLine("Properties (size: ${properties.size}):")
+        output.indented { writeProperties(properties) }
 
-        strB + "Parts (size: " + nodeParts.size += "):"
-        for ((i, nodePart) in nodeParts.withIndex()) {
-            val str = "Part[$i]:\n" + nodePart.getNodePart().indentBy(indent)
-            strB + str.indentBy(indent)
+        output.writeLine("Parts (size: ${nodeParts.size}):")
+        for ((i, nodePart) in nodeParts.withIndex()) output.indented {
+            output.writeLine("Part[$i]:")
+            output.indented { nodePart.writeNodePart() }
         }
 
-        strB + "Children (size: " + children.size += "):"
-        for ((i, child) in children.withIndex()) {
-            val str = "Child[$i]:\n" + child.getNode().indentBy(indent)
-            strB + str.indentBy(indent)
+        output.writeLine("Children (size: ${children.size}):")
+        for ((i, child) in children.withIndex()) output.indented {
+            output.writeLine("Child[$i]:")
+            output.indented { child.writeNode() }
         }
-
-        return strB.toString()
     }
 
-    private fun SimpleNodePart.getNodePart(): String {
-        val strB = StringBuilder()
-        strB + "Part index: " += partIndex
-        strB + "Material index: " += materialIndex
-        return strB.toString()
+    private fun SimpleNodePart.writeNodePart() {
+        output.writeLine("Part index: $partIndex")
+        output.writeLine("Material index: $materialIndex")
     }
 
-    private fun getProperties(properties: Array<String>): String {
-        val strB = StringBuilder()
+    private fun writeProperties(properties: Array<String>) {
         properties.forEachIndexed { i, prop ->
-            strB + '[' + i + "] " += prop
+            output.writeLine("[$i] $prop")
         }
-        return strB.toString()
     }
 
-    private fun getIndexLength(array: ShortArray) = array.run {
-        if (isEmpty()) 1
-        else max("% 1d".format(minOrNull()!!).length,
-                "% 1d".format(maxOrNull()!!).length)
+    private fun getIndexLength(array: IntArray): Int {
+        var min = array[0]
+        var max = array[0]
+        for (value in array) {
+            if (value < min) min = value
+            if (value > max) max = value
+        }
+
+        return max(getIntLength(min, spaceSign = true), getIntLength(max, spaceSign = true))
     }
 
-    private fun writeArray(
+    private inline fun writeArray(
             array: FloatArray,
             valuesPerLine: Int,
             maxLength: Int,
             maxKeyLength: Int,
             isRepeated: (Float) -> Int,
             isIndexed: (Float) -> Float
-    ): String {
-        val strB = StringBuilder()
+    ) {
         var offset = 0
-        var previous = PreviousValue.COMMON
+        var separator = NO_SEPARATOR
 
-        for ((i, value) in array.withIndex()) {
+        for (i in array.indices) {
+            val value = array[i]
             val repeated = isRepeated(value)
             if (repeated > 0) {
-                previous = PreviousValue.REPEATED
-                strB + "Repeat " + repeated += " times..."
+                separator = writeSeparator(separator)
+                output.writeLine("Repeat $repeated times...")
                 offset += valuesPerLine - 1
                 offset %= valuesPerLine
                 continue
             }
 
             val indexed = isIndexed(value)
+            separator = writeSeparator(separator)
             if (!indexed.isNaN()) {
-                previous = PreviousValue.INDEXED
-                strB += "[%-${maxKeyLength}.6f]".format(indexed)
+                output.write('[')
+                output.writeFloat(indexed, maxKeyLength, leftAligned = true)
+                output.writeLine("]")
                 offset += valuesPerLine - 1
                 offset %= valuesPerLine
             } else {
-                previous = PreviousValue.COMMON
                 val isLast = (i + offset) % valuesPerLine == valuesPerLine - 1
-                strB + "% ${maxLength}.6f".format(value) + ',' +
+                output.writeFloat(value, maxLength, spaceSign = true)
+                separator =
                         if (isLast) '\n'
                         else ' '
             }
         }
 
-        if (array.isNotEmpty() && previous == PreviousValue.COMMON)
-            strB.removeLast(",")
-
-        return strB.toString()
+        // the last value is written without a comma
+        if (separator != NO_SEPARATOR) output.write(separator)
     }
 
     // ----- Help functions ----- //
 
-    private fun StringBuilder.removeLast(subString: String) {
-        val lastSubStrIndex = lastIndexOf(subString)
-        delete(lastSubStrIndex, lastSubStrIndex + subString.length)
+    private fun writeSeparator(separator: Char): Char {
+        if (separator != NO_SEPARATOR) {
+            output.write(',')
+            output.write(separator)
+        }
+        return NO_SEPARATOR
+    }
+
+    private fun maxFloatLength(vararg arrays: FloatArray, positive: Boolean = false): Int {
+        var maxLength = -1
+        for (floats in arrays)
+            for (value in floats)
+                maxLength = max(maxLength, getFloatLength(value, spaceSign = !positive))
+
+        return if (maxLength >= 0) maxLength
+        else if (positive) 3 else 4
     }
 
-    private fun maxFloatLength(floats: FloatArray, positive: Boolean = false): Int {
-        val formatStr = if (positive) "%1.6f" else "% 1.6f"
-        return floats.map { formatStr.format(it).length }
-                .maxOrNull()
-                ?: if (positive) 3 else 4
+    // keys are compared as floats (0.0 == -0.0), so -0.0 is stored as 0.0
+    private fun createKeysTable(keys: FloatArray): FloatGroupTable {
+        val normalizedKeys = FloatArray(keys.size) { keys[it] + 0f }
+        val table = FloatGroupTable(1, keys.size)
+        for (i in normalizedKeys.indices) table.add(normalizedKeys, i)
+        return table
     }
 
+    private fun isKey(keys: FloatGroupTable, value: Float) = value + 0f in keys
+
 }
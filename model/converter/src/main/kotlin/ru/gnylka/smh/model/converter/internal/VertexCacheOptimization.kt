@@ -0,0 +1,211 @@
+package ru.gnylka.smh.model.converter.internal
+
+import ru.gnylka.smh.model.data.SimpleModel
+import ru.gnylka.smh.processing.data.MeshAttribute.*
+
+// post-transform vertex cache is simulated as FIFO of this size
+internal const val VERTEX_CACHE_SIZE = 16
+private const val FACE_SIZE = 3
+
+/*
+    Faces of every part are reordered for the post-transform vertex cache using Tipsify
+    (Sander, Nehab, Barczak, "Fast Triangle Reordering for Vertex Locality and Reduced Overdraw"):
+    triangles around the current vertex are emitted as a fan, then the next vertex
+    is the one emitted last which is still in the cache and has unemitted triangles
+
+    After that vertices are renumbered in the order of their first use, so that
+    points, normals and texture coordinates are fetched sequentially.
+    Vertices with texture coordinates go before the ones without them, so the two groups
+    are renumbered separately, unused vertices are moved to the end of their group
+ */
+internal class VertexCacheOptimization internal constructor(private val simpleModel: SimpleModel) {
+
+    private val verticesCount = simpleModel.pointsCount
+    private val texturedCount = simpleModel.texCoordsCount
+
+    init {
+        require(simpleModel.isPlain()) { VERTEX_CACHE_OPTIMIZED_MODEL }
+    }
+
+    internal fun optimizeModel(): SimpleModel {
+        // part's vertices are numbered from 0 while it is reordered
+        val localIndices = IntArray(verticesCount) { -1 }
+        val reorderedParts = simpleModel.parts.map { reorderFaces(it, localIndices) }
+
+        val newIndices = renumberVertices(reorderedParts)
+        val newParts = reorderedParts.map { part ->
+            IntArray(part.size) { newIndices[part[it]] }
+        }
+
+        return simpleModel.run {
+            SimpleModel(
+                    permute(points, POSITION.size, newIndices),
+                    pointsKeys, pointsIndices, pointsCount,
+                    permute(normals, NORMAL.size, newIndices),
+                    normalsIndices, normalsCount,
+                    permute(texCoords, TEXCOORD.size, newIndices),
+                    texCoordsKeys, texCoordsIndices, texCoordsCount,
+                    newParts.toTypedArray(), facesCount,
+                    materials, nodes, globalProperties
+            )
+        }
+    }
+
+    private fun SimpleModel.isPlain() =
+            pointsKeys.isEmpty() && points.size == pointsCount * POSITION.size &&
+                    normalsIndices.isEmpty() &&
+                    (normals.isEmpty() || normals.size == pointsCount * NORMAL.size) &&
+                    texCoordsKeys.isEmpty() && texCoords.size == texCoordsCount * TEXCOORD.size &&
+                    texCoordsCount <= pointsCount &&
+                    parts.all { part -> part.all { it in 0 until pointsCount } }
+
+    private fun reorderFaces(part: IntArray, localIndices: IntArray): IntArray {
+        val globalIndices = IntArray(part.size)
+        var partVerticesCount = 0
+        val localPart = IntArray(part.size) {
+            val vertex = part[it]
+            if (localIndices[vertex] == -1) {
+                localIndices[vertex] = partVerticesCount
+                globalIndices[partVerticesCount++] = vertex
+            }
+            localIndices[vertex]
+        }
+
+        val reordered = tipsify(localPart, partVerticesCount)
+
+        for (i in 0 until partVerticesCount)
+            localIndices[globalIndices[i]] = -1
+        for (i in reordered.indices)
+            reordered[i] = globalIndices[reordered[i]]
+
+        return reordered
+    }
+
+    private fun tipsify(indices: IntArray, partVerticesCount: Int): IntArray {
+        // faces of every vertex, each face is listed as many times as it contains the vertex
+        val facesOffsets = IntArray(partVerticesCount + 1)
+        for (vertex in indices) facesOffsets[vertex + 1]++
+        for (i in 0 until partVerticesCount) facesOffsets[i + 1] += facesOffsets[i]
+
+        val vertexFaces = IntArray(indices.size)
+        val facesPositions = facesOffsets.copyOf(partVerticesCount)
+        for (i in indices.indices) vertexFaces[facesPositions[indices[i]]++] = i / FACE_SIZE
+
+        // the amount of not yet emitted faces of every vertex
+        val liveCounts = IntArray(partVerticesCount) { facesOffsets[it + 1] - facesOffsets[it] }
+        // time when vertex was put into the cache
+        val cacheTimes = IntArray(partVerticesCount)
+        val emitted = BooleanArray(indices.size / FACE_SIZE)
+
+        val deadEnds = IntArray(indices.size)
+        var deadEndsSize = 0
+
+        val output = IntArray(indices.size)
+        var outputSize = 0
+
+        var time = VERTEX_CACHE_SIZE + 1
+        var cursor = 0
+        var fanningVertex = if (indices.isEmpty()) -1 else indices[0]
+
+        while (fanningVertex != -1) {
+            val fanStart = outputSize
+
+            for (i in facesOffsets[fanningVertex] until facesOffsets[fanningVertex + 1]) {
+                val face = vertexFaces[i]
+                if (emitted[face]) continue
+                emitted[face] = true
+
+                for (j in face * FACE_SIZE until (face + 1) * FACE_SIZE) {
+                    val vertex = indices[j]
+                    output[outputSize++] = vertex
+                    deadEnds[deadEndsSize++] = vertex
+                    liveCounts[vertex]--
+
+                    if (time - cacheTimes[vertex] > VERTEX_CACHE_SIZE)
+                        cacheTimes[vertex] = time++
+                }
+            }
+
+            // vertices of the fan which will still be in the cache after their faces are emitted,
+            // the oldest of them goes first
+            var nextVertex = -1
+            var bestPriority = -1
+            for (i in fanStart until outputSize) {
+                val vertex = output[i]
+                if (liveCounts[vertex] == 0) continue
+
+                val age = time - cacheTimes[vertex]
+                val priority = if (age + 2 * liveCounts[vertex] <= VERTEX_CACHE_SIZE) age else 0
+                if (priority > bestPriority) {
+                    bestPriority = priority
+                    nextVertex = vertex
+                }
+            }
+
+            // dead end, the most recently used vertex or the first one with faces left
+            while (nextVertex == -1 && deadEndsSize > 0) {
+                val vertex = deadEnds[--deadEndsSize]
+                if (liveCounts[vertex] > 0) nextVertex = vertex
+            }
+            while (nextVertex == -1 && cursor < partVerticesCount) {
+                if (liveCounts[cursor] > 0) nextVertex = cursor
+                else cursor++
+            }
+
+            fanningVertex = nextVertex
+        }
+
+        return output
+    }
+
+    private fun renumberVertices(parts: List<IntArray>): IntArray {
+        val newIndices = IntArray(verticesCount) { -1 }
+        var nextTextured = 0
+        var nextPlain = texturedCount
+
+        val renumber = { vertex: Int ->
+            if (newIndices[vertex] == -1)
+                newIndices[vertex] =
+                        if (vertex < texturedCount) nextTextured++
+                        else nextPlain++
+        }
+
+        for (part in parts)
+            for (vertex in part) renumber(vertex)
+        for (vertex in 0 until verticesCount) renumber(vertex)
+
+        return newIndices
+    }
+
+    private fun permute(values: FloatArray, vertexSize: Int, newIndices: IntArray): FloatArray {
+        val newValues = FloatArray(values.size)
+        for (vertex in 0 until values.size / vertexSize)
+            System.arraycopy(values, vertex * vertexSize,
+                    newValues, newIndices[vertex] * vertexSize, vertexSize)
+
+        return newValues
+    }
+
+}
+
+/*
+    Average cache miss ratio: the number of vertices which are not found
+    in FIFO cache of VERTEX_CACHE_SIZE vertices per face,
+    from 0.5 for a large regular grid to 3 for faces without shared vertices
+ */
+internal fun getCacheMissRatio(part: IntArray): Float {
+    if (part.size < FACE_SIZE) return 0f
+
+    val cache = IntArray(VERTEX_CACHE_SIZE) { -1 }
+    var cacheStart = 0
+    var misses = 0
+
+    for (vertex in part)
+        if (vertex !in cache) {
+            cache[cacheStart] = vertex
+            cacheStart = (cacheStart + 1) % VERTEX_CACHE_SIZE
+            misses++
+        }
+
+    return misses.toFloat() / (part.size / FACE_SIZE)
+}
@@ -0,0 +1,141 @@
+package ru.gnylka.smh.model.data;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+// no values accept null
+public final class SimpleBufferModel {
+
+    // same as SimpleModel, but vertices and parts are kept in buffers
+    // (ModelLoader.loadDirect fills them with direct buffers in native byte order,
+    // so that they are stored off-heap)
+    // buffers are read using absolute indices from 0 to limit
+    // optimizations are always resolved, so there are no keys and indices
+
+    public final FloatBuffer points;
+    public final int pointsCount;
+
+    public final FloatBuffer normals;
+    public final int normalsCount;
+
+    public final FloatBuffer texCoords;
+    public final int texCoordsCount;
+
+    public final IntBuffer[] parts;
+    public final int[] facesCount;
+    public final SimpleMaterial[] materials;
+    public final SimpleNode[] nodes;
+    public final String[] globalProperties;
+
+    public SimpleBufferModel(FloatBuffer points,
+                             FloatBuffer normals,
+                             FloatBuffer texCoords,
+                             IntBuffer[] parts,
+                             SimpleMaterial[] materials,
+                             SimpleNode[] nodes,
+                             String[] globalProperties) {
+        this.points = points;
+        this.pointsCount = points.limit() / 3;
+
+        this.normals = normals;
+        this.normalsCount = normals.limit() / 3;
+
+        this.texCoords = texCoords;
+        this.texCoordsCount = texCoords.limit() / 2;
+
+        this.parts = parts;
+        this.facesCount = getFacesCount(parts);
+
+        this.materials = materials;
+        this.nodes = nodes;
+        this.globalProperties = globalProperties;
+
+        assert points.limit() % 3 == 0 :    "Points length must be divisible by 3";
+        assert normals.limit() % 3 == 0 :   "Normals length must be divisible by 3";
+        assert texCoords.limit() % 2 == 0 : "Texture coordinates length must be divisible by 2";
+    }
+
+    /**
+     * Creates model which shares arrays of specified model
+     * <br>
+     * Model must not contain unresolved optimizations (keys),
+     * models returned by ModelLoader always satisfy this
+     *
+     * @param model model to wrap
+     *
+     * @return model backed by heap buffers wrapping arrays of specified model
+     */
+    public static SimpleBufferModel wrap(SimpleModel model) {
+        var parts = new IntBuffer[model.parts.length];
+        for (int i = 0; i < parts.length; i++)
+            parts[i] = IntBuffer.wrap(model.parts[i]);
+
+        return new SimpleBufferModel(
+                FloatBuffer.wrap(model.points),
+                FloatBuffer.wrap(model.normals),
+                FloatBuffer.wrap(model.texCoords),
+                parts,
+                model.materials,
+                model.nodes,
+                model.globalProperties
+        );
+    }
+
+    private static int[] getFacesCount(IntBuffer[] parts) {
+        int[] facesCount = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            facesCount[i] = parts[i].limit() / 3;
+            assert parts[i].limit() % 3 == 0 : "Faces indices length must be divisible by 3";
+        }
+        return facesCount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SimpleBufferModel that = (SimpleBufferModel) o;
+        return pointsCount == that.pointsCount &&
+                normalsCount == that.normalsCount &&
+                texCoordsCount == that.texCoordsCount &&
+                points.equals(that.points) &&
+                normals.equals(that.normals) &&
+                texCoords.equals(that.texCoords) &&
+                Arrays.equals(parts, that.parts) &&
+                Arrays.equals(facesCount, that.facesCount) &&
+                Arrays.equals(materials, that.materials) &&
+                Arrays.equals(nodes, that.nodes) &&
+                Arrays.equals(globalProperties, that.globalProperties);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Objects.hash(pointsCount, normalsCount, texCoordsCount, points, normals, texCoords);
+        result = 31 * result + Arrays.hashCode(parts);
+        result = 31 * result + Arrays.hashCode(facesCount);
+        result = 31 * result + Arrays.hashCode(materials);
+        result = 31 * result + Arrays.hashCode(nodes);
+        result = 31 * result + Arrays.hashCode(globalProperties);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "SimpleBufferModel{" +
+                "points=" + points +
+                ", pointsCount=" + pointsCount +
+                ", normals=" + normals +
+                ", normalsCount=" + normalsCount +
+                ", texCoords=" + texCoords +
+                ", texCoordsCount=" + texCoordsCount +
+                ", parts=" + Arrays.toString(parts) +
+                ", facesCount=" + Arrays.toString(facesCount) +
+                ", materials=" + Arrays.toString(materials) +
+                ", nodes=" + Arrays.toString(nodes) +
+                ", globalProperties=" + Arrays.toString(globalProperties) +
+                '}';
+    }
+
+}
@@ -25,7 +25,7 @@ public final class SimpleModel {
     public final float[] texCoordsIndices;
     public final int texCoordsCount;
 
-    public final short[][] parts;
+    public final int[][] parts;
     public final int[] facesCount;
     public final SimpleMaterial[] materials;
     public final SimpleNode[] nodes;
@@ -34,7 +34,7 @@ public final class SimpleModel {
     public SimpleModel(float[] points,
                        float[] normals,
                        float[] texCoords,
-                       short[][] parts,
+                       int[][] parts,
                        SimpleMaterial[] materials,
                        SimpleNode[] nodes,
                        String[] globalProperties) {
@@ -60,7 +60,7 @@ public final class SimpleModel {
                        float[] texCoordsKeys,
                        float[] texCoordsIndices,
                        int texCoordsCount,
-                       short[][] parts,
+                       int[][] parts,
                        int[] facesCount,
                        SimpleMaterial[] materials,
                        SimpleNode[] nodes,
@@ -87,7 +87,7 @@ public final class SimpleModel {
         this.globalProperties = globalProperties;
     }
 
-    private static int[] getFacesCount(short[][] parts) {
+    private static int[] getFacesCount(int[][] parts) {
         int[] facesCount = new int[parts.length];
         for (int i = 0; i < parts.length; i++) {
             facesCount[i] = parts[i].length / 3;
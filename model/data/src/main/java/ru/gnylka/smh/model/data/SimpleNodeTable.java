@@ -0,0 +1,272 @@
+package ru.gnylka.smh.model.data;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Objects;
+
+// no values accept null
+public final class SimpleNodeTable {
+
+    // same nodes as SimpleNode hierarchy, but all of them are stored in a few flat arrays
+    // nodes are numbered in depth-first order (the order they are written in),
+    // so that parent's index is always less than its children's indices
+    // XXXOffsets[i] .. XXXOffsets[i + 1] is the range of node i in XXX array
+
+    public static final int TRANSLATION_OFFSET = 0;
+    public static final int ROTATION_OFFSET = 3;
+    public static final int SCALE_OFFSET = 7;
+    // translation (x, y, z), rotation (x, y, z, w), scale (x, y, z)
+    public static final int TRANSFORM_SIZE = 10;
+
+    public static final int NO_PARENT = -1;
+
+    public final int nodesCount;
+    public final String[] ids;          // equal ids are the same String instance
+    public final float[] transforms;
+    public final int[] parents;         // NO_PARENT for root nodes
+
+    public final int[] roots;
+    public final int[] childrenOffsets;
+    public final int[] children;
+
+    public final int[] nodePartsOffsets;
+    public final int[] nodeParts;       // part index and material index of every node part
+
+    public final int[] propertiesOffsets;
+    public final String[] properties;
+
+    /**
+     * Creates table of nodes, roots and children are computed from parents
+     *
+     * @param ids ids of nodes
+     * @param transforms {@link #TRANSFORM_SIZE} values for every node
+     * @param parents parent of every node, must be less than node's index
+     * @param nodePartsOffsets nodesCount + 1 offsets into node parts (in pairs)
+     * @param nodeParts part and material indices of all nodes
+     * @param propertiesOffsets nodesCount + 1 offsets into properties
+     * @param properties properties of all nodes
+     */
+    public SimpleNodeTable(String[] ids,
+                           float[] transforms,
+                           int[] parents,
+                           int[] nodePartsOffsets,
+                           int[] nodeParts,
+                           int[] propertiesOffsets,
+                           String[] properties) {
+        this.nodesCount = ids.length;
+        this.ids = ids;
+        this.transforms = transforms;
+        this.parents = parents;
+
+        this.nodePartsOffsets = nodePartsOffsets;
+        this.nodeParts = nodeParts;
+
+        this.propertiesOffsets = propertiesOffsets;
+        this.properties = properties;
+
+        assert transforms.length == nodesCount * TRANSFORM_SIZE :
+                "Transforms length must be " + TRANSFORM_SIZE + " times the nodes count";
+        assert parents.length == nodesCount :           "Every node must have a parent";
+        assert nodePartsOffsets.length == nodesCount + 1 :  "Node parts offsets length must be nodes count + 1";
+        assert propertiesOffsets.length == nodesCount + 1 : "Properties offsets length must be nodes count + 1";
+
+        // counting sort of nodes by their parents keeps children in their order
+        childrenOffsets = new int[nodesCount + 1];
+        int rootsCount = 0;
+        for (int parent : parents) {
+            if (parent == NO_PARENT) rootsCount++;
+            else childrenOffsets[parent + 1]++;
+        }
+        for (int i = 0; i < nodesCount; i++)
+            childrenOffsets[i + 1] += childrenOffsets[i];
+
+        roots = new int[rootsCount];
+        children = new int[nodesCount - rootsCount];
+        int[] childrenPositions = Arrays.copyOf(childrenOffsets, nodesCount);
+        rootsCount = 0;
+        for (int i = 0; i < nodesCount; i++) {
+            int parent = parents[i];
+            assert parent < i : "Parent must go before its children";
+            if (parent == NO_PARENT) roots[rootsCount++] = i;
+            else children[childrenPositions[parent]++] = i;
+        }
+    }
+
+    /**
+     * Creates table containing the same nodes as specified hierarchy
+     * (hierarchy is traversed without recursion)
+     *
+     * @param nodes root nodes
+     *
+     * @return table of nodes
+     */
+    public static SimpleNodeTable of(SimpleNode[] nodes) {
+        var ordered = new ArrayList<SimpleNode>();
+        var parentsList = new ArrayList<Integer>();
+
+        // children are pushed in reverse order, so that they are popped in depth-first order
+        // (parents stack holds the index of the parent of the node on the same position)
+        var stack = new ArrayDeque<SimpleNode>();
+        var parentsStack = new ArrayDeque<Integer>();
+        for (int i = nodes.length - 1; i >= 0; i--) {
+            stack.push(nodes[i]);
+            parentsStack.push(NO_PARENT);
+        }
+
+        while (!stack.isEmpty()) {
+            var node = stack.pop();
+            int index = ordered.size();
+            ordered.add(node);
+            parentsList.add(parentsStack.pop());
+
+            for (int i = node.children.length - 1; i >= 0; i--) {
+                stack.push(node.children[i]);
+                parentsStack.push(index);
+            }
+        }
+
+        int nodesCount = ordered.size();
+        var ids = new String[nodesCount];
+        var transforms = new float[nodesCount * TRANSFORM_SIZE];
+        var parents = new int[nodesCount];
+        var nodePartsOffsets = new int[nodesCount + 1];
+        var propertiesOffsets = new int[nodesCount + 1];
+        var interned = new HashMap<String, String>();
+
+        for (int i = 0; i < nodesCount; i++) {
+            var node = ordered.get(i);
+            ids[i] = interned.computeIfAbsent(node.id, id -> id);
+            parents[i] = parentsList.get(i);
+
+            int offset = i * TRANSFORM_SIZE;
+            System.arraycopy(node.translation, 0, transforms, offset + TRANSLATION_OFFSET, 3);
+            System.arraycopy(node.rotation, 0, transforms, offset + ROTATION_OFFSET, 4);
+            System.arraycopy(node.scale, 0, transforms, offset + SCALE_OFFSET, 3);
+
+            nodePartsOffsets[i + 1] = nodePartsOffsets[i] + node.nodeParts.length * 2;
+            propertiesOffsets[i + 1] = propertiesOffsets[i] + node.properties.length;
+        }
+
+        var nodeParts = new int[nodePartsOffsets[nodesCount]];
+        var properties = new String[propertiesOffsets[nodesCount]];
+        for (int i = 0; i < nodesCount; i++) {
+            var node = ordered.get(i);
+
+            int partsOffset = nodePartsOffsets[i];
+            for (var nodePart : node.nodeParts) {
+                nodeParts[partsOffset++] = nodePart.partIndex;
+                nodeParts[partsOffset++] = nodePart.materialIndex;
+            }
+
+            int propertiesOffset = propertiesOffsets[i];
+            for (var property : node.properties)
+                properties[propertiesOffset++] = interned.computeIfAbsent(property, p -> p);
+        }
+
+        return new SimpleNodeTable(ids, transforms, parents,
+                nodePartsOffsets, nodeParts, propertiesOffsets, properties);
+    }
+
+    /**
+     * Creates SimpleNode hierarchy containing the same nodes as this table
+     * <br>
+     * Nodes are created from the last to the first one, so that children
+     * always exist before their parent (no recursion is used)
+     *
+     * @return root nodes
+     */
+    public SimpleNode[] toNodes() {
+        var nodes = new SimpleNode[nodesCount];
+
+        for (int i = nodesCount - 1; i >= 0; i--) {
+            int offset = i * TRANSFORM_SIZE;
+
+            var nodeChildren = new SimpleNode[getChildrenCount(i)];
+            for (int j = 0; j < nodeChildren.length; j++)
+                nodeChildren[j] = nodes[children[childrenOffsets[i] + j]];
+
+            nodes[i] = new SimpleNode(
+                    ids[i],
+                    Arrays.copyOfRange(transforms, offset + TRANSLATION_OFFSET, offset + ROTATION_OFFSET),
+                    Arrays.copyOfRange(transforms, offset + ROTATION_OFFSET, offset + SCALE_OFFSET),
+                    Arrays.copyOfRange(transforms, offset + SCALE_OFFSET, offset + TRANSFORM_SIZE),
+                    createNodeParts(i),
+                    nodeChildren,
+                    Arrays.copyOfRange(properties, propertiesOffsets[i], propertiesOffsets[i + 1])
+            );
+        }
+
+        var rootNodes = new SimpleNode[roots.length];
+        for (int i = 0; i < roots.length; i++)
+            rootNodes[i] = nodes[roots[i]];
+
+        return rootNodes;
+    }
+
+    public int getChildrenCount(int node) {
+        return childrenOffsets[node + 1] - childrenOffsets[node];
+    }
+
+    public int getNodePartsCount(int node) {
+        return (nodePartsOffsets[node + 1] - nodePartsOffsets[node]) / 2;
+    }
+
+    public int getPropertiesCount(int node) {
+        return propertiesOffsets[node + 1] - propertiesOffsets[node];
+    }
+
+    private SimpleNodePart[] createNodeParts(int node) {
+        var nodeParts = new SimpleNodePart[getNodePartsCount(node)];
+        for (int i = 0; i < nodeParts.length; i++) {
+            int offset = nodePartsOffsets[node] + i * 2;
+            nodeParts[i] = new SimpleNodePart(this.nodeParts[offset], this.nodeParts[offset + 1]);
+        }
+
+        return nodeParts;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SimpleNodeTable that = (SimpleNodeTable) o;
+        return nodesCount == that.nodesCount &&
+                Arrays.equals(ids, that.ids) &&
+                Arrays.equals(transforms, that.transforms) &&
+                Arrays.equals(parents, that.parents) &&
+                Arrays.equals(nodePartsOffsets, that.nodePartsOffsets) &&
+                Arrays.equals(nodeParts, that.nodeParts) &&
+                Arrays.equals(propertiesOffsets, that.propertiesOffsets) &&
+                Arrays.equals(properties, that.properties);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Objects.hash(nodesCount);
+        result = 31 * result + Arrays.hashCode(ids);
+        result = 31 * result + Arrays.hashCode(transforms);
+        result = 31 * result + Arrays.hashCode(parents);
+        result = 31 * result + Arrays.hashCode(nodePartsOffsets);
+        result = 31 * result + Arrays.hashCode(nodeParts);
+        result = 31 * result + Arrays.hashCode(propertiesOffsets);
+        result = 31 * result + Arrays.hashCode(properties);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "SimpleNodeTable{" +
+                "nodesCount=" + nodesCount +
+                ", ids=" + Arrays.toString(ids) +
+                ", transforms=" + Arrays.toString(transforms) +
+                ", parents=" + Arrays.toString(parents) +
+                ", nodePartsOffsets=" + Arrays.toString(nodePartsOffsets) +
+                ", nodeParts=" + Arrays.toString(nodeParts) +
+                ", propertiesOffsets=" + Arrays.toString(propertiesOffsets) +
+                ", properties=" + Arrays.toString(properties) +
+                '}';
+    }
+
+}
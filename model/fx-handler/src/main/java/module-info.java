@@ -1,7 +1,5 @@
 module ru.gnylka.smh.model.fxhandler {
 
-    requires org.joml;
-
     requires javafx.base;
     requires javafx.graphics;
 
@@ -1,6 +1,6 @@
 package ru.gnylka.smh.model.fxhandler;
 
-import javafx.geometry.Point3D;
+import javafx.application.Platform;
 import javafx.scene.AmbientLight;
 import javafx.scene.Group;
 import javafx.scene.Node;
@@ -12,44 +12,62 @@ import javafx.scene.shape.Mesh;
 import javafx.scene.shape.MeshView;
 import javafx.scene.shape.TriangleMesh;
 import javafx.scene.shape.VertexFormat;
-import javafx.scene.transform.Rotate;
-import javafx.scene.transform.Scale;
-import javafx.scene.transform.Translate;
-import org.joml.AxisAngle4d;
-import org.joml.Quaterniond;
-import org.joml.Vector3d;
-import ru.gnylka.smh.model.data.SimpleMaterial;
+import javafx.scene.transform.Affine;
+import ru.gnylka.smh.model.data.SimpleBufferModel;
 import ru.gnylka.smh.model.data.SimpleModel;
 import ru.gnylka.smh.model.data.SimpleNode;
 
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 
 import static java.util.Objects.requireNonNull;
 
 public final class FXHandler {
 
-    private final SimpleModel model;
+    private final SimpleBufferModel model;
     private final Function<? super String, ? extends Image> imageLoader;
     private final boolean saveProperties;
 
-    private final ArrayList<Mesh> parts = new ArrayList<>();
-    private final ArrayList<Material> materials = new ArrayList<>();
-    private final ArrayList<AmbientLight> lights = new ArrayList<>();
+    private final Mesh[] parts;
+    private final Material[] materials;
+    // lights are nodes, so they are created for every assembled hierarchy
+    private final Color[] ambientColors;
 
-    private FXHandler(SimpleModel model,
-                      Function<? super String, ? extends Image> imageLoader,
-                      boolean saveProperties) {
+    // index of every model's vertex in the part being created or -1,
+    // arrays are reused by the next parts (parts may be created concurrently)
+    private final ConcurrentLinkedQueue<int[]> localIndicesPool = new ConcurrentLinkedQueue<>();
+
+    // every texture is loaded once per model (use TextureCache to share them between models)
+    private final ConcurrentHashMap<String, CompletableFuture<Image>> textures = new ConcurrentHashMap<>();
+
+    FXHandler(SimpleBufferModel model,
+              Function<? super String, ? extends Image> imageLoader,
+              boolean saveProperties) {
         this.model = model;
         this.imageLoader = imageLoader;
         this.saveProperties = saveProperties;
+
+        parts = new Mesh[model.parts.length];
+        materials = new Material[model.materials.length];
+        ambientColors = new Color[model.materials.length];
     }
 
     /**
      * Creates nodes hierarchy forming the model using information from {@link SimpleModel} object
      *
      * @param model model object
-     * @param imageLoader a function used to load textures by passing texture name to it<br>
+     * @param imageLoader a function used to load textures by passing texture name to it
+     *                    (for instance, {@link TextureCache})<br>
      *                    If null textures will be ignored
      *
      * @return {@link Group} containing all root nodes
@@ -63,7 +81,8 @@ public final class FXHandler {
      * Creates nodes hierarchy forming the model using information from {@link SimpleModel} object
      *
      * @param model model object
-     * @param imageLoader a function used to load textures by passing texture name to it<br>
+     * @param imageLoader a function used to load textures by passing texture name to it
+     *                    (for instance, {@link TextureCache})<br>
      *                    If null textures will be ignored
      * @param saveProperties if model or any node contains properties,
      *                       they will be stored as array of strings in {@link Node#setUserData}
@@ -75,20 +94,322 @@ public final class FXHandler {
                              boolean saveProperties) {
         requireNonNull(model);
 
+        return load(SimpleBufferModel.wrap(model), imageLoader, saveProperties);
+    }
+
+    /**
+     * Creates nodes hierarchy forming the model using information from {@link SimpleBufferModel} object
+     *
+     * @param model model object (for instance, loaded into direct buffers)
+     * @param imageLoader a function used to load textures by passing texture name to it
+     *                    (for instance, {@link TextureCache})<br>
+     *                    If null textures will be ignored
+     *
+     * @return {@link Group} containing all root nodes
+     */
+    public static Group load(SimpleBufferModel model,
+                             Function<? super String, ? extends Image> imageLoader) {
+        return load(model, imageLoader, false);
+    }
+
+    /**
+     * Creates nodes hierarchy forming the model using information from {@link SimpleBufferModel} object
+     *
+     * @param model model object (for instance, loaded into direct buffers)
+     * @param imageLoader a function used to load textures by passing texture name to it
+     *                    (for instance, {@link TextureCache})<br>
+     *                    If null textures will be ignored
+     * @param saveProperties if model or any node contains properties,
+     *                       they will be stored as array of strings in {@link Node#setUserData}
+     *
+     * @return {@link Group} containing all root nodes
+     */
+    public static Group load(SimpleBufferModel model,
+                             Function<? super String, ? extends Image> imageLoader,
+                             boolean saveProperties) {
+        requireNonNull(model);
+
         return new FXHandler(model, imageLoader, saveProperties).createModel();
     }
 
+    /**
+     * Creates flattened scene graph of the model using information from {@link SimpleModel} object
+     * <br>
+     * Transforms of nodes are multiplied into one {@link Affine} per node,
+     * so that mesh views are placed directly into the returned group
+     * (or into the group of the nearest kept node), the other nodes are not created.
+     * Ambient lights of materials are added to the returned group once
+     *
+     * @param model model object
+     * @param imageLoader a function used to load textures by passing texture name to it
+     *                    (for instance, {@link TextureCache})<br>
+     *                    If null textures will be ignored
+     * @param keptIds ids of nodes which are kept as groups with the same id
+     *                (their transforms are relative to the nearest kept ancestor)
+     *
+     * @return {@link Group} containing mesh views and kept nodes
+     */
+    public static Group loadFlattened(SimpleModel model,
+                                      Function<? super String, ? extends Image> imageLoader,
+                                      Set<String> keptIds) {
+        return loadFlattened(model, imageLoader, false, keptIds);
+    }
+
+    /**
+     * Creates flattened scene graph of the model using information from {@link SimpleModel} object
+     * <br>
+     * Transforms of nodes are multiplied into one {@link Affine} per node,
+     * so that mesh views are placed directly into the returned group
+     * (or into the group of the nearest kept node), the other nodes are not created.
+     * Ambient lights of materials are added to the returned group once
+     *
+     * @param model model object
+     * @param imageLoader a function used to load textures by passing texture name to it
+     *                    (for instance, {@link TextureCache})<br>
+     *                    If null textures will be ignored
+     * @param saveProperties if model or any kept node contains properties,
+     *                       they will be stored as array of strings in {@link Node#setUserData}
+     * @param keptIds ids of nodes which are kept as groups with the same id
+     *                (their transforms are relative to the nearest kept ancestor)
+     *
+     * @return {@link Group} containing mesh views and kept nodes
+     */
+    public static Group loadFlattened(SimpleModel model,
+                                      Function<? super String, ? extends Image> imageLoader,
+                                      boolean saveProperties,
+                                      Set<String> keptIds) {
+        requireNonNull(model);
+
+        return loadFlattened(SimpleBufferModel.wrap(model), imageLoader, saveProperties, keptIds);
+    }
+
+    /**
+     * Creates flattened scene graph of the model using information from {@link SimpleBufferModel} object
+     * <br>
+     * Transforms of nodes are multiplied into one {@link Affine} per node,
+     * so that mesh views are placed directly into the returned group
+     * (or into the group of the nearest kept node), the other nodes are not created.
+     * Ambient lights of materials are added to the returned group once
+     *
+     * @param model model object (for instance, loaded into direct buffers)
+     * @param imageLoader a function used to load textures by passing texture name to it
+     *                    (for instance, {@link TextureCache})<br>
+     *                    If null textures will be ignored
+     * @param keptIds ids of nodes which are kept as groups with the same id
+     *                (their transforms are relative to the nearest kept ancestor)
+     *
+     * @return {@link Group} containing mesh views and kept nodes
+     */
+    public static Group loadFlattened(SimpleBufferModel model,
+                                      Function<? super String, ? extends Image> imageLoader,
+                                      Set<String> keptIds) {
+        return loadFlattened(model, imageLoader, false, keptIds);
+    }
+
+    /**
+     * Creates flattened scene graph of the model using information from {@link SimpleBufferModel} object
+     * <br>
+     * Transforms of nodes are multiplied into one {@link Affine} per node,
+     * so that mesh views are placed directly into the returned group
+     * (or into the group of the nearest kept node), the other nodes are not created.
+     * Ambient lights of materials are added to the returned group once
+     *
+     * @param model model object (for instance, loaded into direct buffers)
+     * @param imageLoader a function used to load textures by passing texture name to it
+     *                    (for instance, {@link TextureCache})<br>
+     *                    If null textures will be ignored
+     * @param saveProperties if model or any kept node contains properties,
+     *                       they will be stored as array of strings in {@link Node#setUserData}
+     * @param keptIds ids of nodes which are kept as groups with the same id
+     *                (their transforms are relative to the nearest kept ancestor)
+     *
+     * @return {@link Group} containing mesh views and kept nodes
+     */
+    public static Group loadFlattened(SimpleBufferModel model,
+                                      Function<? super String, ? extends Image> imageLoader,
+                                      boolean saveProperties,
+                                      Set<String> keptIds) {
+        requireNonNull(model);
+        requireNonNull(keptIds);
+
+        return new FXHandler(model, imageLoader, saveProperties).build().assembleFlattenedModel(keptIds);
+    }
+
+    /**
+     * Creates nodes hierarchy forming the model without blocking the calling thread
+     * <br>
+     * Meshes and materials are created as separate tasks submitted to the executor
+     * (textures are loaded there too), then the nodes are assembled
+     * on JavaFX Application Thread, which must be running
+     *
+     * @param model model object
+     * @param imageLoader a function used to load textures by passing texture name to it
+     *                    (for instance, {@link TextureCache})<br>
+     *                    If null textures will be ignored
+     * @param executor executor to run tasks on
+     *                 (for instance, {@link java.util.concurrent.ForkJoinPool#commonPool()})
+     *
+     * @return future which is completed on JavaFX Application Thread
+     * with {@link Group} containing all root nodes
+     */
+    public static CompletableFuture<Group> loadAsync(SimpleModel model,
+                                                     Function<? super String, ? extends Image> imageLoader,
+                                                     Executor executor) {
+        return loadAsync(model, imageLoader, false, executor);
+    }
+
+    /**
+     * Creates nodes hierarchy forming the model without blocking the calling thread
+     * <br>
+     * Meshes and materials are created as separate tasks submitted to the executor
+     * (textures are loaded there too), then the nodes are assembled
+     * on JavaFX Application Thread, which must be running
+     *
+     * @param model model object
+     * @param imageLoader a function used to load textures by passing texture name to it
+     *                    (for instance, {@link TextureCache})<br>
+     *                    If null textures will be ignored
+     * @param saveProperties if model or any node contains properties,
+     *                       they will be stored as array of strings in {@link Node#setUserData}
+     * @param executor executor to run tasks on
+     *                 (for instance, {@link java.util.concurrent.ForkJoinPool#commonPool()})
+     *
+     * @return future which is completed on JavaFX Application Thread
+     * with {@link Group} containing all root nodes
+     */
+    public static CompletableFuture<Group> loadAsync(SimpleModel model,
+                                                     Function<? super String, ? extends Image> imageLoader,
+                                                     boolean saveProperties,
+                                                     Executor executor) {
+        requireNonNull(model);
+
+        return loadAsync(SimpleBufferModel.wrap(model), imageLoader, saveProperties, executor);
+    }
+
+    /**
+     * Creates nodes hierarchy forming the model without blocking the calling thread
+     * <br>
+     * Meshes and materials are created as separate tasks submitted to the executor
+     * (textures are loaded there too), then the nodes are assembled
+     * on JavaFX Application Thread, which must be running
+     *
+     * @param model model object (for instance, loaded into direct buffers)
+     * @param imageLoader a function used to load textures by passing texture name to it
+     *                    (for instance, {@link TextureCache})<br>
+     *                    If null textures will be ignored
+     * @param executor executor to run tasks on
+     *                 (for instance, {@link java.util.concurrent.ForkJoinPool#commonPool()})
+     *
+     * @return future which is completed on JavaFX Application Thread
+     * with {@link Group} containing all root nodes
+     */
+    public static CompletableFuture<Group> loadAsync(SimpleBufferModel model,
+                                                     Function<? super String, ? extends Image> imageLoader,
+                                                     Executor executor) {
+        return loadAsync(model, imageLoader, false, executor);
+    }
+
+    /**
+     * Creates nodes hierarchy forming the model without blocking the calling thread
+     * <br>
+     * Meshes and materials are created as separate tasks submitted to the executor
+     * (textures are loaded there too), then the nodes are assembled
+     * on JavaFX Application Thread, which must be running
+     *
+     * @param model model object (for instance, loaded into direct buffers)
+     * @param imageLoader a function used to load textures by passing texture name to it
+     *                    (for instance, {@link TextureCache})<br>
+     *                    If null textures will be ignored
+     * @param saveProperties if model or any node contains properties,
+     *                       they will be stored as array of strings in {@link Node#setUserData}
+     * @param executor executor to run tasks on
+     *                 (for instance, {@link java.util.concurrent.ForkJoinPool#commonPool()})
+     *
+     * @return future which is completed on JavaFX Application Thread
+     * with {@link Group} containing all root nodes
+     */
+    public static CompletableFuture<Group> loadAsync(SimpleBufferModel model,
+                                                     Function<? super String, ? extends Image> imageLoader,
+                                                     boolean saveProperties,
+                                                     Executor executor) {
+        requireNonNull(model);
+        requireNonNull(executor);
+
+        return new FXHandler(model, imageLoader, saveProperties).createModelAsync(executor);
+    }
+
     private Group createModel() {
-        for (var part : model.parts)
-            createPart(part);
+        return build().assembleModel();
+    }
+
+    // creates meshes and materials, which are shared by all assembled hierarchies
+    FXHandler build() {
+        for (int i = 0; i < parts.length; i++)
+            parts[i] = createPart(model.parts[i]);
+
+        for (int i = 0; i < materials.length; i++)
+            createMaterial(i);
+
+        // the handler may be kept by a template
+        localIndicesPool.clear();
+        return this;
+    }
+
+    private CompletableFuture<Group> createModelAsync(Executor executor) {
+        var tasks = new CompletableFuture<?>[parts.length + materials.length];
+
+        for (int i = 0; i < parts.length; i++) {
+            int partIndex = i;
+            tasks[i] = CompletableFuture.runAsync(
+                    () -> parts[partIndex] = createPart(model.parts[partIndex]),
+                    executor);
+        }
+
+        for (int i = 0; i < materials.length; i++) {
+            int materialIndex = i;
+            tasks[parts.length + i] = CompletableFuture.runAsync(
+                    () -> createMaterial(materialIndex),
+                    executor);
+        }
+
+        // handleAsync runs on FX thread even if some task has failed
+        return CompletableFuture.allOf(tasks).handleAsync((ignored, e) -> {
+            if (e == null) return assembleModel();
+            if (e instanceof CompletionException) throw (CompletionException) e;
+            throw new CompletionException(e);
+        }, Platform::runLater);
+    }
+
+    /*
+        Creates nodes for the built meshes and materials,
+        may be called many times (see FXModelTemplate)
+     */
+    Group assembleModel() {
+        var lights = new AmbientLight[ambientColors.length];
+        var litNodes = createLitNodes();
+        var modelGroup = new Group();
+
+        for (var node : model.nodes)
+            modelGroup.getChildren().add(createNode(node, lights, litNodes));
+
+        for (int i = 0; i < lights.length; i++)
+            if (lights[i] != null) lights[i].getScope().setAll(litNodes[i]);
+
+        if (saveProperties)
+            modelGroup.setUserData(model.globalProperties);
 
-        for (var material : model.materials)
-            createMaterial(material);
+        return modelGroup;
+    }
 
+    // flattened version of assembleModel
+    Group assembleFlattenedModel(Set<String> keptIds) {
+        var litNodes = createLitNodes();
         var modelGroup = new Group();
 
         for (var node : model.nodes)
-            modelGroup.getChildren().add(createNode(node));
+            flattenNode(node, new Affine(), modelGroup, litNodes, keptIds);
+
+        addLights(modelGroup, litNodes);
 
         if (saveProperties)
             modelGroup.setUserData(model.globalProperties);
@@ -96,110 +417,178 @@ public final class FXHandler {
         return modelGroup;
     }
 
-    private void createPart(short[] part) {
+    // mesh views of the node are added to the group with the node's transform relative to it
+    private void flattenNode(SimpleNode node,
+                             Affine parentTransform,
+                             Group group,
+                             List<Node>[] litNodes,
+                             Set<String> keptIds) {
+        var transform = createTransform(node);
+        transform.prepend(parentTransform);
+
+        if (keptIds.contains(node.id)) {
+            var nodeGroup = new Group();
+            nodeGroup.setId(node.id);
+            if (!transform.isIdentity()) nodeGroup.getTransforms().add(transform);
+            if (saveProperties) nodeGroup.setUserData(node.properties);
+
+            group.getChildren().add(nodeGroup);
+            group = nodeGroup;
+            transform = new Affine();
+        }
+
+        for (var nodePart : node.nodeParts) {
+            var meshView = new MeshView(parts[nodePart.partIndex]);
+            meshView.setMaterial(materials[nodePart.materialIndex]);
+            // transform is not modified after this, so it is shared by mesh views of the node
+            if (!transform.isIdentity()) meshView.getTransforms().add(transform);
+
+            addLitNode(litNodes, nodePart.materialIndex, meshView);
+
+            group.getChildren().add(meshView);
+        }
+
+        for (var child : node.children)
+            flattenNode(child, transform, group, litNodes, keptIds);
+    }
+
+    private Mesh createPart(IntBuffer part) {
         boolean noNormals = model.normalsCount == 0;
-        boolean noTex = Short.toUnsignedInt(part[0]) >= model.texCoordsCount;
-        int partSize = part.length;
+        boolean noTex = part.get(0) >= model.texCoordsCount;
+        int partSize = part.limit();
 
         var mesh = new TriangleMesh(noNormals ?
                 VertexFormat.POINT_TEXCOORD :
                 VertexFormat.POINT_NORMAL_TEXCOORD);
 
-        var meshPoints = mesh.getPoints();
-        int pointSize = mesh.getPointElementSize();
-        meshPoints.ensureCapacity(partSize * pointSize);
+        // vertices are shared by faces as they are in the part,
+        // but only the referenced ones are added (numbered in the order of their first use)
+        var localIndices = localIndicesPool.poll();
+        if (localIndices == null) {
+            localIndices = new int[model.pointsCount];
+            Arrays.fill(localIndices, -1);
+        }
 
-        var meshNormals = mesh.getNormals();
-        int normalSize = mesh.getNormalElementSize();
-        meshNormals.ensureCapacity(partSize * normalSize);
+        int faceVertexSize = noNormals ? 2 : 3;
+        var faces = new int[partSize * faceVertexSize];
+        var partVertices = new int[partSize];
+        int verticesCount = 0;
+        for (int i = 0; i < partSize; i++) {
+            int index = part.get(i);
+            int localIndex = localIndices[index];
+            if (localIndex == -1) {
+                localIndex = verticesCount++;
+                localIndices[index] = localIndex;
+                partVertices[localIndex] = index;
+            }
+
+            int faceOffset = i * faceVertexSize;
+            faces[faceOffset] = localIndex;
+            if (!noNormals) faces[faceOffset + 1] = localIndex;
+            faces[faceOffset + faceVertexSize - 1] = noTex ? 0 : localIndex;
+        }
 
-        var meshTex = mesh.getTexCoords();
+        for (int i = 0; i < verticesCount; i++)
+            localIndices[partVertices[i]] = -1;
+        localIndicesPool.add(localIndices);
+
+        // values are collected into arrays, so that every observable array is set only once
+        int pointSize = mesh.getPointElementSize();
+        int normalSize = mesh.getNormalElementSize();
         int texCoordSize = mesh.getTexCoordElementSize();
-        meshTex.ensureCapacity(partSize * texCoordSize);
+
+        var meshPoints = new float[verticesCount * pointSize];
+        var meshNormals = new float[noNormals ? 0 : verticesCount * normalSize];
+        var meshTex = new float[noTex ? texCoordSize : verticesCount * texCoordSize];
 
         var points = model.points;
         var normals = model.normals;
         var texCoords = model.texCoords;
 
-        var meshFaces = mesh.getFaces();
-        meshFaces.ensureCapacity(partSize * (noNormals ? 2 : 3));
-
-        if (noTex) meshTex.addAll(0, 0);
+        for (int i = 0; i < verticesCount; i++) {
+            int index = partVertices[i];
 
-        int lastFaceIndex = 0;
-        var holder = new int[1];    // to avoid allocation of arrays on varargs
-        for (var index : part) {
-            // due to integer overflow, a negative number may be presented in index
-            int unsignedIndex = Short.toUnsignedInt(index);
+            getValues(points, index * pointSize, meshPoints, i * pointSize, pointSize);
 
-            meshPoints.addAll(points, unsignedIndex * pointSize, pointSize);
-            holder[0] = lastFaceIndex;
-            meshFaces.addAll(holder);
+            if (!noNormals)
+                getValues(normals, index * normalSize, meshNormals, i * normalSize, normalSize);
 
-            if (!noNormals) {
-                meshNormals.addAll(normals, unsignedIndex * normalSize, normalSize);
-                holder[0] = lastFaceIndex;
-                meshFaces.addAll(holder);
-            }
+            if (!noTex)
+                getValues(texCoords, index * texCoordSize, meshTex, i * texCoordSize, texCoordSize);
+        }
 
-            if (noTex) holder[0] = 0;
-            else {
-                meshTex.addAll(texCoords, unsignedIndex * texCoordSize, texCoordSize);
-                holder[0] = lastFaceIndex;
-            }
-            meshFaces.addAll(holder);
+        mesh.getPoints().setAll(meshPoints);
+        mesh.getNormals().setAll(meshNormals);
+        mesh.getTexCoords().setAll(meshTex);
+        mesh.getFaces().setAll(faces);
+        return mesh;
+    }
 
-            lastFaceIndex++;
-        }
-        parts.add(mesh);
+    // buffers may be direct, so values are copied one by one
+    private static void getValues(FloatBuffer source, int index,
+                                  float[] destination, int destinationIndex, int size) {
+        for (int i = 0; i < size; i++)
+            destination[destinationIndex + i] = source.get(index + i);
     }
 
-    private void createMaterial(SimpleMaterial material) {
+    private void createMaterial(int materialIndex) {
+        var material = model.materials[materialIndex];
         Color ambient = createColor(material.ambient, material.opacity),
                 diffuse = createColor(material.diffuse, material.opacity),
                 specular = createColor(material.specular, material.opacity);
 
-        var light = new AmbientLight(ambient);
-
         var phong = new PhongMaterial(diffuse);
         phong.setSpecularColor(specular);
         phong.setSpecularPower(material.shininess);
 
         if (!material.diffuseTexture.isEmpty())
             if (imageLoader != null)
-                phong.setDiffuseMap(imageLoader.apply(material.diffuseTexture));
+                phong.setDiffuseMap(loadTexture(material.diffuseTexture));
 
         if (!material.specularTexture.isEmpty())
             if (imageLoader != null)
-                phong.setSpecularMap(imageLoader.apply(material.specularTexture));
+                phong.setSpecularMap(loadTexture(material.specularTexture));
 
-        materials.add(phong);
-        lights.add(light);
+        materials[materialIndex] = phong;
+        ambientColors[materialIndex] = ambient;
     }
 
-    private Group createNode(SimpleNode node) {
+    /*
+        Materials may be created concurrently, the texture is loaded by the first thread requesting it
+        outside of the map (so that loading doesn't block other entries), other threads wait for it
+     */
+    private Image loadTexture(String name) {
+        var texture = textures.get(name);
+        if (texture == null) {
+            var newTexture = new CompletableFuture<Image>();
+            texture = textures.putIfAbsent(name, newTexture);
+            if (texture == null) {
+                try {
+                    Image image = imageLoader.apply(name);
+                    newTexture.complete(image);
+                    return image;
+                } catch (RuntimeException | Error e) {
+                    newTexture.completeExceptionally(e);
+                    throw e;
+                }
+            }
+        }
+
+        return texture.join();
+    }
+
+    private Group createNode(SimpleNode node, AmbientLight[] lights, List<Node>[] litNodes) {
         var nodeGroup = new Group();
         nodeGroup.setId(node.id);
 
-        var transforms = nodeGroup.getTransforms();
-        var translation = createVector(node.translation);
-        var rotation = createQuaternion(node.rotation);
-        var scale = createVector(node.scale);
-
-        var axisAngle = rotation.get(new AxisAngle4d());
-        transforms.add(new Translate(translation.x, translation.y, translation.z));
-        transforms.add(new Rotate(
-                Math.toDegrees(axisAngle.angle),
-                new Point3D(axisAngle.x, axisAngle.y, axisAngle.z)
-        ));
-        transforms.add(new Scale(scale.x, scale.y, scale.z));
+        nodeGroup.getTransforms().add(createTransform(node));
 
-        var nodePartsGroup = createNodeParts(node);
+        var nodePartsGroup = createNodeParts(node, lights, litNodes);
         nodeGroup.getChildren().add(nodePartsGroup);
 
         var childrenGroup = new Group();
         for (var child : node.children)
-            childrenGroup.getChildren().add(createNode(child));
+            childrenGroup.getChildren().add(createNode(child, lights, litNodes));
         nodeGroup.getChildren().add(childrenGroup);
 
         if (saveProperties)
@@ -208,21 +597,60 @@ public final class FXHandler {
         return nodeGroup;
     }
 
-    private Group createNodeParts(SimpleNode node) {
-        var nodePartsGroup = new Group();
-        var nodeParts = nodePartsGroup.getChildren();
+    /*
+        Ambient light of every used material is created once and placed next to
+        the first mesh view it lights (so that the model group contains only root nodes),
+        its scope is filled after the whole hierarchy is created
+     */
+    private Group createNodeParts(SimpleNode node, AmbientLight[] lights, List<Node>[] litNodes) {
+        var nodeParts = new ArrayList<Node>(node.nodeParts.length);
         for (var nodePart : node.nodeParts) {
-            var meshView = new MeshView(parts.get(nodePart.partIndex));
-            meshView.setMaterial(materials.get(nodePart.materialIndex));
+            var meshView = new MeshView(parts[nodePart.partIndex]);
+            meshView.setMaterial(materials[nodePart.materialIndex]);
 
-            var light = lights.get(nodePart.materialIndex);
-            light.getScope().add(meshView);
+            int materialIndex = nodePart.materialIndex;
+            if (lights[materialIndex] == null) {
+                lights[materialIndex] = new AmbientLight(ambientColors[materialIndex]);
+                nodeParts.add(lights[materialIndex]);
+            }
 
+            addLitNode(litNodes, materialIndex, meshView);
             nodeParts.add(meshView);
-            nodeParts.add(light);
         }
 
-        return nodePartsGroup;
+        return new Group(nodeParts);
+    }
+
+    /*
+        Nodes lit by the ambient light of every material,
+        the lists are collected while the hierarchy is created
+     */
+    @SuppressWarnings("unchecked")
+    private List<Node>[] createLitNodes() {
+        return (List<Node>[]) new List<?>[ambientColors.length];
+    }
+
+    private static void addLitNode(List<Node>[] litNodes, int materialIndex, Node node) {
+        if (litNodes[materialIndex] == null)
+            litNodes[materialIndex] = new ArrayList<>();
+        litNodes[materialIndex].add(node);
+    }
+
+    /*
+        Ambient light of every used material is added to the flattened model group once,
+        its scope is filled with a single change instead of a change per mesh view
+     */
+    private void addLights(Group modelGroup, List<Node>[] litNodes) {
+        var lights = new ArrayList<Node>();
+        for (int i = 0; i < litNodes.length; i++) {
+            if (litNodes[i] == null) continue;
+
+            var light = new AmbientLight(ambientColors[i]);
+            light.getScope().setAll(litNodes[i]);
+            lights.add(light);
+        }
+
+        modelGroup.getChildren().addAll(lights);
     }
 
     private Color createColor(int[] colorArray, int opacity) {
@@ -234,20 +662,31 @@ public final class FXHandler {
         );
     }
 
-    private Vector3d createVector(float[] vectorArray) {
-        return new Vector3d(
-                vectorArray[0],
-                vectorArray[1],
-                vectorArray[2]
-        );
-    }
-
-    private Quaterniond createQuaternion(float[] quaternionArray) {
-        return new Quaterniond(
-                quaternionArray[0],
-                quaternionArray[1],
-                quaternionArray[2],
-                quaternionArray[3]
+    /*
+        Translation * rotation * scale of the node as a single matrix,
+        computed directly from the (possibly not normalized) rotation quaternion:
+        columns of the rotation matrix are multiplied by the scale components
+     */
+    private static Affine createTransform(SimpleNode node) {
+        var translation = node.translation;
+        var rotation = node.rotation;
+        var scale = node.scale;
+
+        double x = rotation[0], y = rotation[1], z = rotation[2], w = rotation[3];
+        double norm = x * x + y * y + z * z + w * w;
+        // zero quaternion is treated as no rotation
+        double s = norm == 0.0 ? 0.0 : 2.0 / norm;
+
+        double xx = x * x * s, yy = y * y * s, zz = z * z * s;
+        double xy = x * y * s, xz = x * z * s, yz = y * z * s;
+        double wx = w * x * s, wy = w * y * s, wz = w * z * s;
+
+        double sx = scale[0], sy = scale[1], sz = scale[2];
+
+        return new Affine(
+                (1.0 - yy - zz) * sx, (xy - wz) * sy, (xz + wy) * sz, translation[0],
+                (xy + wz) * sx, (1.0 - xx - zz) * sy, (yz - wx) * sz, translation[1],
+                (xz - wy) * sx, (yz + wx) * sy, (1.0 - xx - yy) * sz, translation[2]
         );
     }
 
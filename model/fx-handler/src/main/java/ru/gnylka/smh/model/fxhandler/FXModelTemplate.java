@@ -0,0 +1,126 @@
+package ru.gnylka.smh.model.fxhandler;
+
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.image.Image;
+import ru.gnylka.smh.model.data.SimpleBufferModel;
+import ru.gnylka.smh.model.data.SimpleModel;
+
+import java.util.Set;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Model whose meshes and materials are created once and shared by all its instances
+ * <br>
+ * Every instance is a new nodes hierarchy (the same as {@link FXHandler#load} creates),
+ * but its {@link javafx.scene.shape.MeshView}s use the template's meshes and materials,
+ * so an instance costs only its nodes<br>
+ * Instances can be created on any thread, but must be attached to a scene
+ * on JavaFX Application Thread
+ */
+public final class FXModelTemplate {
+
+    private final FXHandler handler;
+
+    private FXModelTemplate(FXHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Creates meshes and materials of the model
+     *
+     * @param model model object
+     * @param imageLoader a function used to load textures by passing texture name to it
+     *                    (for instance, {@link TextureCache})<br>
+     *                    If null textures will be ignored
+     *
+     * @return template of the model
+     */
+    public static FXModelTemplate of(SimpleModel model,
+                                     Function<? super String, ? extends Image> imageLoader) {
+        return of(model, imageLoader, false);
+    }
+
+    /**
+     * Creates meshes and materials of the model
+     *
+     * @param model model object
+     * @param imageLoader a function used to load textures by passing texture name to it
+     *                    (for instance, {@link TextureCache})<br>
+     *                    If null textures will be ignored
+     * @param saveProperties if model or any node contains properties,
+     *                       they will be stored as array of strings in {@link Node#setUserData}
+     *                       of every instance
+     *
+     * @return template of the model
+     */
+    public static FXModelTemplate of(SimpleModel model,
+                                     Function<? super String, ? extends Image> imageLoader,
+                                     boolean saveProperties) {
+        requireNonNull(model);
+
+        return of(SimpleBufferModel.wrap(model), imageLoader, saveProperties);
+    }
+
+    /**
+     * Creates meshes and materials of the model
+     *
+     * @param model model object (for instance, loaded into direct buffers)
+     * @param imageLoader a function used to load textures by passing texture name to it
+     *                    (for instance, {@link TextureCache})<br>
+     *                    If null textures will be ignored
+     *
+     * @return template of the model
+     */
+    public static FXModelTemplate of(SimpleBufferModel model,
+                                     Function<? super String, ? extends Image> imageLoader) {
+        return of(model, imageLoader, false);
+    }
+
+    /**
+     * Creates meshes and materials of the model
+     *
+     * @param model model object (for instance, loaded into direct buffers)
+     * @param imageLoader a function used to load textures by passing texture name to it
+     *                    (for instance, {@link TextureCache})<br>
+     *                    If null textures will be ignored
+     * @param saveProperties if model or any node contains properties,
+     *                       they will be stored as array of strings in {@link Node#setUserData}
+     *                       of every instance
+     *
+     * @return template of the model
+     */
+    public static FXModelTemplate of(SimpleBufferModel model,
+                                     Function<? super String, ? extends Image> imageLoader,
+                                     boolean saveProperties) {
+        requireNonNull(model);
+
+        return new FXModelTemplate(new FXHandler(model, imageLoader, saveProperties).build());
+    }
+
+    /**
+     * Creates a new instance of the model
+     *
+     * @return {@link Group} containing all root nodes
+     */
+    public Group createInstance() {
+        return handler.assembleModel();
+    }
+
+    /**
+     * Creates a new flattened instance of the model
+     * (see {@link FXHandler#loadFlattened(SimpleModel, Function, Set)})
+     *
+     * @param keptIds ids of nodes which are kept as groups with the same id
+     *
+     * @return {@link Group} containing mesh views and kept nodes
+     */
+    public Group createFlattenedInstance(Set<String> keptIds) {
+        requireNonNull(keptIds);
+
+        return handler.assembleFlattenedModel(keptIds);
+    }
+
+}
@@ -0,0 +1,156 @@
+package ru.gnylka.smh.model.fxhandler;
+
+import javafx.scene.image.Image;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Keeps textures loaded by name, so that every texture is loaded once
+ * and shared by all materials and models using it
+ * <br>
+ * Cache is passed to {@link FXHandler} as image loader and can be reused by many loads.
+ * When it contains more than the maximum amount of textures,
+ * the least recently used ones are evicted<br>
+ * Cache is thread-safe, the same texture requested concurrently is loaded once
+ * (different textures are loaded in parallel)
+ */
+public final class TextureCache implements Function<String, Image> {
+
+    private final Function<? super String, ? extends Image> imageLoader;
+    private final int maxSize;
+
+    // access order, so that the eldest entry is the least recently used one
+    private final LinkedHashMap<String, CachedTexture> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedTexture> eldest) {
+            return size() > maxSize;
+        }
+    };
+
+    private long loadsCount;
+    private long hitsCount;
+
+    /**
+     * Creates cache loading textures with specified function
+     *
+     * @param imageLoader a function used to load textures by passing texture name to it
+     * @param maxSize maximum amount of textures kept by the cache
+     */
+    public TextureCache(Function<? super String, ? extends Image> imageLoader, int maxSize) {
+        requireNonNull(imageLoader);
+        if (maxSize <= 0) throw new IllegalArgumentException(
+                "Maximum size must be positive (got " + maxSize + ")");
+
+        this.imageLoader = imageLoader;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Creates cache loading textures from files in specified directory
+     *
+     * @param directory directory textures names are resolved against
+     * @param maxSize maximum amount of textures kept by the cache
+     * @param backgroundLoading whether textures are decoded in background
+     *                          (see {@link Image#Image(String, boolean)}),
+     *                          materials are updated when decoding is finished
+     *
+     * @return cache object
+     */
+    public static TextureCache of(Path directory, int maxSize, boolean backgroundLoading) {
+        requireNonNull(directory);
+
+        return new TextureCache(name -> new Image(
+                directory.resolve(name).toUri().toString(),
+                backgroundLoading
+        ), maxSize);
+    }
+
+    /**
+     * @param name texture name
+     *
+     * @return texture from the cache or loaded one if there is no such texture in the cache
+     */
+    @Override
+    public Image apply(String name) {
+        requireNonNull(name);
+
+        CachedTexture texture;
+        synchronized (entries) {
+            texture = entries.get(name);
+            if (texture == null) {
+                texture = new CachedTexture(name);
+                entries.put(name, texture);
+            } else hitsCount++;
+        }
+
+        return texture.getImage();
+    }
+
+    /**
+     * Removes all textures from the cache
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * @return amount of textures in the cache
+     */
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return amount of textures loaded by the cache
+     */
+    public long getLoadsCount() {
+        synchronized (entries) {
+            return loadsCount;
+        }
+    }
+
+    /**
+     * @return amount of requests served from the cache
+     */
+    public long getHitsCount() {
+        synchronized (entries) {
+            return hitsCount;
+        }
+    }
+
+    // texture is loaded by the first thread requesting it, other threads wait for it
+    private final class CachedTexture {
+
+        private final String name;
+        private Image image;
+        private boolean loaded;
+
+        private CachedTexture(String name) {
+            this.name = name;
+        }
+
+        private synchronized Image getImage() {
+            if (!loaded) {
+                image = imageLoader.apply(name);
+                loaded = true;
+
+                synchronized (entries) {
+                    loadsCount++;
+                }
+            }
+
+            return image;
+        }
+
+    }
+
+}
@@ -0,0 +1,100 @@
+package ru.gnylka.smh.model.loader;
+
+import java.util.Arrays;
+
+/*
+    Open-addressing hash table mapping float keys to their indices in the keys array
+    Keys are compared by their bits, so 0.0f and -0.0f are different keys
+    (the same way Arrays.binarySearch treats them)
+    Table can be refilled, so that its arrays are reused by ModelLoaderContext
+ */
+final class FloatIndexTable {
+
+    private int[] keysBits = new int[1];
+    // index + 1, so that 0 marks an empty slot
+    private int[] indices = new int[1];
+    private int mask;
+    private int size;
+
+    static FloatIndexTable of(float[] keys, int size) {
+        return new FloatIndexTable().fill(keys, size);
+    }
+
+    static int getCapacity(int size) {
+        int capacity = Integer.highestOneBit(Math.max(size, 1) * 2);
+        if (capacity < size * 2) capacity <<= 1;
+        return capacity;
+    }
+
+    int getCapacity() {
+        return indices.length;
+    }
+
+    /**
+     * Replaces keys of the table with the first size keys of specified array
+     * (arrays of the table are reused if they are big enough)
+     *
+     * @return this table
+     */
+    FloatIndexTable fill(float[] keys, int size) {
+        int capacity = getCapacity(size);
+        if (indices.length < capacity) {
+            keysBits = new int[capacity];
+            indices = new int[capacity];
+        } else Arrays.fill(indices, 0, capacity, 0);
+
+        mask = capacity - 1;
+        this.size = size;
+
+        for (int i = 0; i < size; i++)
+            put(Float.floatToRawIntBits(keys[i]), i);
+
+        return this;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return index of the key or -1 if there is no such key
+     */
+    int indexOf(float key) {
+        int bits = Float.floatToRawIntBits(key);
+        int slot = hash(bits) & mask;
+
+        while (indices[slot] != 0) {
+            if (keysBits[slot] == bits) return indices[slot] - 1;
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    boolean contains(float key) {
+        return !isEmpty() && indexOf(key) >= 0;
+    }
+
+    private void put(int bits, int index) {
+        int slot = hash(bits) & mask;
+
+        while (indices[slot] != 0) {
+            // the first of repeated keys wins
+            if (keysBits[slot] == bits) return;
+            slot = (slot + 1) & mask;
+        }
+
+        keysBits[slot] = bits;
+        indices[slot] = index + 1;
+    }
+
+    private static int hash(int bits) {
+        int h = bits * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+}
@@ -1,16 +1,38 @@
 package ru.gnylka.smh.model.loader;
 
+import ru.gnylka.smh.model.data.SimpleBufferModel;
 import ru.gnylka.smh.model.data.SimpleMaterial;
 import ru.gnylka.smh.model.data.SimpleModel;
 import ru.gnylka.smh.model.data.SimpleNode;
-import ru.gnylka.smh.model.data.SimpleNodePart;
+import ru.gnylka.smh.model.data.SimpleNodeTable;
 
-import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UTFDataFormatException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.GZIPInputStream;
 
 import static java.lang.Math.abs;
+import static java.lang.Math.min;
+import static java.util.Objects.requireNonNull;
+import static ru.gnylka.smh.model.data.SimpleNodeTable.NO_PARENT;
+import static ru.gnylka.smh.model.data.SimpleNodeTable.TRANSFORM_SIZE;
+import static ru.gnylka.smh.model.loader.ModelLoaderContext.*;
 
 public final class ModelLoader {
 
@@ -19,32 +41,96 @@ public final class ModelLoader {
     private static final int TEX_COORD_SIZE = 2;
     private static final int FACE_SIZE = 3;
 
-    private ModelLoader(DataInputStream input) {
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+    // values converted at once when vertices or indices are copied into direct buffers
+    private static final int BULK_COPY_CHUNK_SIZE = 16 * 1024;
+    private static final int INITIAL_NODES_DEPTH = 16;
+
+    // must be in sync with BinaryWriting
+    // (a model without sections directory can't start with these bytes:
+    // it would be a single property containing byte 0xFF, which is not valid UTF-8)
+    private static final byte[] MAGIC = { 0x01, 0x00, 0x01, (byte) 0xFF };
+    private static final int FORMAT_VERSION = 1;
+    // counts are stored as ints instead of unsigned shorts and bytes, part indices are ints
+    private static final int FLAG_WIDE_INDICES = 0x01;
+    // points, normals and texture coordinates are stored as 16-bit values
+    private static final int FLAG_QUANTIZED = 0x02;
+    // part indices are stored as zigzag-encoded differences written as varints
+    private static final int FLAG_DELTA_PARTS = 0x04;
+    private static final int SUPPORTED_FLAGS = FLAG_WIDE_INDICES | FLAG_QUANTIZED | FLAG_DELTA_PARTS;
+    // magic, format version, format flags and sections count
+    private static final int HEADER_SIZE = MAGIC.length + 2 * Byte.BYTES + Integer.BYTES;
+    private static final int DIRECTORY_ENTRY_SIZE = 2 * Integer.BYTES;
+    // the maximum size of an array
+    private static final int MAX_MODEL_SIZE = Integer.MAX_VALUE - 8;
+    private static final int MAX_SNORM16 = Short.MAX_VALUE;
+    private static final float SNORM16_SCALE = 1.0f / MAX_SNORM16;
+
+    private static final int PROPERTIES_SECTION = 0;
+    private static final int POINTS_KEYS_SECTION = 1;
+    private static final int NORMALS_INDICES_SECTION = 2;
+    private static final int TEX_COORDS_KEYS_SECTION = 3;
+    private static final int POINTS_SECTION = 4;
+    private static final int NORMALS_SECTION = 5;
+    private static final int TEX_COORDS_SECTION = 6;
+    private static final int MATERIALS_SECTION = 7;
+    private static final int NODES_SECTION = 8;
+    // each part has its own section, all of them go after the other sections
+    private static final int PARTS_SECTION = 9;
+
+    private ModelLoader(ByteBuffer input) {
+        this(input, null);
+    }
+
+    ModelLoader(ByteBuffer input, ModelLoaderContext context) {
         this.input = input;
+        this.context = context;
     }
 
-    private final DataInputStream input;
+    // the whole model is kept in memory, so that sections can be
+    // copied in bulk through FloatBuffer and ShortBuffer views
+    private final ByteBuffer input;
+    // keeps buffers between loads, null if loader is used only once
+    private final ModelLoaderContext context;
+
+    // both are null if model has no sections directory
+    private int[] sectionOffsets;
+    private int[] sectionLengths;
 
-    private float[] points;
+    // whether vertices and parts are decoded into direct buffers
+    private boolean direct;
+    private boolean wide;
+    private boolean quantized;
+    private boolean deltaParts;
+
+    private FloatBuffer points;
     private float[] pointsKeys;
+    private FloatIndexTable pointsKeysTable;
     private float[] pointsIndices;
 
-    private float[] normals;
+    private FloatBuffer normals;
     private float[] normalsIndices;
 
-    private float[] texCoords;
+    private FloatBuffer texCoords;
     private float[] texCoordsKeys;
+    private FloatIndexTable texCoordsKeysTable;
     private float[] texCoordsIndices;
 
-    private short[][] parts;
+    private IntBuffer[] parts;
     private int[] facesCount;
     private SimpleMaterial[] materials;
     private SimpleNode[] nodes;
+    private SimpleNodeTable nodeTable;
     private String[] globalProperties;
 
     /**
      * Loads model from specified input stream
      * <br>
+     * The model is read into memory at once before being decoded. The stream is read
+     * up to the end of the model (its size is known from the sections directory),
+     * so data following the model is left in the stream.
+     * Models written without sections directory are read until the end of the stream
+     * <br>
      * Note that any optimizations applied to the model are resolved
      *
      * @param inputStream stream to load model from
@@ -54,104 +140,658 @@ public final class ModelLoader {
      * @throws IOException if IOException occurs
      */
     public static SimpleModel load(InputStream inputStream) throws IOException {
-        var input = new DataInputStream(inputStream);
-
-        var loader = new ModelLoader(input);
-        loader.globalProperties = loader.readProperties();
-        loader.readPointsKeys();
-        loader.readPointsIndices();
-        loader.readNormalsIndices();
-        loader.readTexCoordsKeys();
-        loader.readTexCoordsIndices();
-        loader.readPoints();
-        loader.readNormals();
-        loader.readTexCoords();
-        loader.readFaces();
-        loader.readMaterials();
-        loader.readNodes();
+        var input = readInput(inputStream);
+        return new ModelLoader(input).loadModel();
+    }
+
+    /**
+     * Loads model from specified file
+     * <br>
+     * Uncompressed files are mapped into memory and decoded without being copied to the heap,
+     * gzip-compressed files are detected automatically and decompressed while being read
+     * <br>
+     * Note that any optimizations applied to the model are resolved
+     *
+     * @param path file to load model from
+     *
+     * @return model object
+     *
+     * @throws IOException if IOException occurs
+     */
+    public static SimpleModel load(Path path) throws IOException {
+        return open(path).loadModel();
+    }
+
+    /**
+     * Loads model from specified input stream into direct buffers
+     * <br>
+     * Vertices and parts are decoded straight into buffers allocated outside of the heap,
+     * which is useful when many models stay loaded at the same time.
+     * The buffers use native byte order
+     * <br>
+     * The model is read into memory at once before being decoded. The stream is read
+     * up to the end of the model (its size is known from the sections directory),
+     * so data following the model is left in the stream.
+     * Models written without sections directory are read until the end of the stream
+     * <br>
+     * Note that any optimizations applied to the model are resolved
+     *
+     * @param inputStream stream to load model from
+     *
+     * @return model object backed by direct buffers
+     *
+     * @throws IOException if IOException occurs
+     */
+    public static SimpleBufferModel loadDirect(InputStream inputStream) throws IOException {
+        var input = readInput(inputStream);
+        return new ModelLoader(input).loadBufferModel();
+    }
+
+    /**
+     * Loads model from specified file into direct buffers
+     * <br>
+     * Works the same way as {@link #load(Path)}, but vertices and parts are decoded
+     * straight into buffers allocated outside of the heap (in native byte order)
+     *
+     * @param path file to load model from
+     *
+     * @return model object backed by direct buffers
+     *
+     * @throws IOException if IOException occurs
+     */
+    public static SimpleBufferModel loadDirect(Path path) throws IOException {
+        return open(path).loadBufferModel();
+    }
+
+    /**
+     * Loads model from specified input stream decoding its sections in parallel
+     * <br>
+     * Points, normals, texture coordinates, materials, nodes and each part
+     * are decoded as separate tasks submitted to the executor,
+     * the calling thread waits for all of them and assembles the model.
+     * Models written without sections directory are decoded on the calling thread
+     * <br>
+     * The model is read into memory at once before being decoded. The stream is read
+     * up to the end of the model (its size is known from the sections directory),
+     * so data following the model is left in the stream.
+     * Models written without sections directory are read until the end of the stream
+     * <br>
+     * Note that any optimizations applied to the model are resolved
+     *
+     * @param inputStream stream to load model from
+     * @param executor executor to run decoding tasks on
+     *                 (for instance, {@link java.util.concurrent.ForkJoinPool#commonPool()})
+     *
+     * @return model object
+     *
+     * @throws IOException if IOException occurs
+     */
+    public static SimpleModel load(InputStream inputStream, Executor executor) throws IOException {
+        requireNonNull(executor);
+
+        var input = readInput(inputStream);
+        return new ModelLoader(input).loadModel(executor);
+    }
+
+    /**
+     * Loads model from specified file decoding its sections in parallel
+     * <br>
+     * Works the same way as {@link #load(Path)}, but points, normals, texture coordinates,
+     * materials, nodes and each part are decoded as separate tasks submitted to the executor,
+     * the calling thread waits for all of them and assembles the model.
+     * Models written without sections directory are decoded on the calling thread
+     *
+     * @param path file to load model from
+     * @param executor executor to run decoding tasks on
+     *                 (for instance, {@link java.util.concurrent.ForkJoinPool#commonPool()})
+     *
+     * @return model object
+     *
+     * @throws IOException if IOException occurs
+     */
+    public static SimpleModel load(Path path, Executor executor) throws IOException {
+        requireNonNull(executor);
+
+        return open(path).loadModel(executor);
+    }
+
+    /**
+     * Loads only the nodes hierarchy of the model from specified file
+     * <br>
+     * If the file has sections directory, the other sections are not decoded at all
+     *
+     * @param path file to load nodes from
+     *
+     * @return root nodes of the model
+     *
+     * @throws IOException if IOException occurs
+     */
+    public static SimpleNode[] loadNodes(Path path) throws IOException {
+        return open(path).loadSelected(loader -> {
+            loader.readSection(NODES_SECTION, loader::readNodes);
+            return loader.nodes;
+        });
+    }
+
+    /**
+     * Loads only the nodes of the model from specified file into a table of nodes
+     * <br>
+     * Nodes are read without recursion and without creating an object per node,
+     * so that this is the preferred way to load big or deep hierarchies.
+     * If the file has sections directory, the other sections are not decoded at all
+     *
+     * @param path file to load nodes from
+     *
+     * @return table of all nodes of the model
+     *
+     * @throws IOException if IOException occurs
+     */
+    public static SimpleNodeTable loadNodeTable(Path path) throws IOException {
+        return open(path).loadSelected(loader -> {
+            loader.readSection(NODES_SECTION, loader::readNodeTable);
+            return loader.nodeTable;
+        });
+    }
+
+    /**
+     * Loads only the materials of the model from specified file
+     * <br>
+     * If the file has sections directory, the other sections are not decoded at all
+     *
+     * @param path file to load materials from
+     *
+     * @return materials of the model
+     *
+     * @throws IOException if IOException occurs
+     */
+    public static SimpleMaterial[] loadMaterials(Path path) throws IOException {
+        return open(path).loadSelected(loader -> {
+            loader.readSection(MATERIALS_SECTION, loader::readMaterials);
+            return loader.materials;
+        });
+    }
+
+    /**
+     * Loads only the specified parts of the model from specified file
+     * <br>
+     * If the file has sections directory, the other sections are not decoded at all
+     *
+     * @param path file to load parts from
+     * @param partIndices indices of parts to load
+     *
+     * @return parts in the same order as their indices were specified
+     *
+     * @throws IOException if IOException occurs
+     * @throws IndexOutOfBoundsException if model has no part with such index
+     */
+    public static int[][] loadParts(Path path, int... partIndices) throws IOException {
+        return open(path).loadSelected(loader -> {
+            var selectedParts = new int[partIndices.length][];
+            for (int i = 0; i < partIndices.length; i++)
+                selectedParts[i] = loader.readPart(partIndices[i]).array();
+            return selectedParts;
+        });
+    }
+
+    private static ModelLoader open(Path path) throws IOException {
+        return open(path, null);
+    }
+
+    static ModelLoader open(Path path, ModelLoaderContext context) throws IOException {
+        try (var channel = FileChannel.open(path)) {
+            if (isCompressed(channel)) {
+                var inputStream = new GZIPInputStream(
+                        Channels.newInputStream(channel), GZIP_BUFFER_SIZE);
+                var input = context == null ?
+                        readInput(inputStream) :
+                        context.readInput(inputStream);
+                return new ModelLoader(input, context);
+            }
+
+            var input = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new ModelLoader(input, context);
+        }
+    }
+
+    private static ByteBuffer readInput(InputStream inputStream) throws IOException {
+        var head = readHead(inputStream);
+        long size = getModelSize(head);
+        if (size < 0) {
+            var rest = inputStream.readAllBytes();
+            var bytes = Arrays.copyOf(head, head.length + rest.length);
+            System.arraycopy(rest, 0, bytes, head.length, rest.length);
+            return ByteBuffer.wrap(bytes);
+        }
+
+        var bytes = Arrays.copyOf(head, (int) size);
+        int read = inputStream.readNBytes(bytes, head.length, bytes.length - head.length);
+        // truncated model is reported by the loader
+        return ByteBuffer.wrap(bytes, 0, head.length + read).slice();
+    }
+
+    /*
+        Reads the header and the sections directory of the model (or as much of them as there is),
+        only the header is read if the model has no directory or its sections count is invalid
+     */
+    static byte[] readHead(InputStream inputStream) throws IOException {
+        var header = inputStream.readNBytes(HEADER_SIZE);
+        if (!hasDirectory(header)) return header;
+
+        int sectionsCount = ByteBuffer.wrap(header).getInt(HEADER_SIZE - Integer.BYTES);
+        if (sectionsCount < PARTS_SECTION ||
+                sectionsCount > (MAX_MODEL_SIZE - HEADER_SIZE) / DIRECTORY_ENTRY_SIZE) return header;
+
+        var head = Arrays.copyOf(header, HEADER_SIZE + sectionsCount * DIRECTORY_ENTRY_SIZE);
+        int read = inputStream.readNBytes(head, HEADER_SIZE, head.length - HEADER_SIZE);
+        return read == head.length - HEADER_SIZE ? head : Arrays.copyOf(head, HEADER_SIZE + read);
+    }
+
+    /*
+        Returns the size of the model with the head read by readHead (the end of its last section)
+        or -1 if the model has no sections directory, so its size is unknown
+     */
+    static long getModelSize(byte[] head) throws IOException {
+        if (!hasDirectory(head)) return -1;
+
+        var directory = ByteBuffer.wrap(head);
+        long size = head.length;
+        for (int i = HEADER_SIZE; i + DIRECTORY_ENTRY_SIZE <= head.length; i += DIRECTORY_ENTRY_SIZE) {
+            long end = Integer.toUnsignedLong(directory.getInt(i)) +
+                    Integer.toUnsignedLong(directory.getInt(i + Integer.BYTES));
+            size = Math.max(size, end);
+        }
+
+        if (size > MAX_MODEL_SIZE) throw new IOException(
+                "Model is too big to be loaded from stream (" + size + " bytes)");
+
+        return size;
+    }
+
+    private static boolean hasDirectory(byte[] head) {
+        if (head.length < HEADER_SIZE) return false;
+        for (int i = 0; i < MAGIC.length; i++)
+            if (head[i] != MAGIC[i]) return false;
+        return true;
+    }
+
+    private static boolean isCompressed(FileChannel channel) throws IOException {
+        var header = ByteBuffer.allocate(Short.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining())
+            if (channel.read(header, header.position()) < 0) return false;
+
+        return Short.toUnsignedInt(header.getShort(0)) == GZIPInputStream.GZIP_MAGIC;
+    }
+
+    SimpleModel loadModel() throws IOException {
+        return loadSelected(loader -> {
+            loader.createModel();
+            return loader.assembleModel();
+        });
+    }
+
+    SimpleBufferModel loadBufferModel() throws IOException {
+        direct = true;
+        return loadSelected(loader -> {
+            loader.createModel();
+            return loader.assembleBufferModel();
+        });
+    }
+
+    private SimpleModel loadModel(Executor executor) throws IOException {
+        return loadSelected(loader -> {
+            if (loader.isLegacy()) loader.createModel();
+            else loader.createModelInParallel(executor);
+            return loader.assembleModel();
+        });
+    }
+
+    private void createModel() throws IOException {
+        readSharedSections();
+        readSection(POINTS_SECTION, this::readPoints);
+        readSection(NORMALS_SECTION, this::readNormals);
+        readSection(TEX_COORDS_SECTION, this::readTexCoords);
+        readParts();
+        readSection(MATERIALS_SECTION, this::readMaterials);
+        readSection(NODES_SECTION, this::readNodes);
+    }
+
+    private void createModelInParallel(Executor executor) throws IOException {
+        // keys and indices are small, but needed by the most of tasks
+        readSharedSections();
+
+        var pointsTask = readAsync(executor, loader -> {
+            loader.readSection(POINTS_SECTION, loader::readPoints);
+            return loader.points;
+        });
+        var normalsTask = readAsync(executor, loader -> {
+            loader.readSection(NORMALS_SECTION, loader::readNormals);
+            return loader.normals;
+        });
+        var texCoordsTask = readAsync(executor, loader -> {
+            loader.readSection(TEX_COORDS_SECTION, loader::readTexCoords);
+            return loader.texCoords;
+        });
+        var materialsTask = readAsync(executor, loader -> {
+            loader.readSection(MATERIALS_SECTION, loader::readMaterials);
+            return loader.materials;
+        });
+        var nodesTask = readAsync(executor, loader -> {
+            loader.readSection(NODES_SECTION, loader::readNodes);
+            return loader.nodes;
+        });
+
+        int partsSize = getPartsCount();
+        var partsTasks = new ArrayList<CompletableFuture<IntBuffer>>(partsSize);
+        for (int i = 0; i < partsSize; i++) {
+            int partIndex = i;
+            partsTasks.add(readAsync(executor, loader -> loader.readPart(partIndex)));
+        }
+
+        points = join(pointsTask);
+        normals = join(normalsTask);
+        texCoords = join(texCoordsTask);
+
+        parts = new IntBuffer[partsSize];
+        facesCount = new int[partsSize];
+        for (int i = 0; i < partsSize; i++) {
+            parts[i] = join(partsTasks.get(i));
+            facesCount[i] = parts[i].limit() / FACE_SIZE;
+        }
+
+        materials = join(materialsTask);
+        nodes = join(nodesTask);
+    }
+
+    private void readSharedSections() throws IOException {
+        readSection(PROPERTIES_SECTION, () -> globalProperties = readProperties());
+        readSection(POINTS_KEYS_SECTION, () -> {
+            readPointsKeys();
+            readPointsIndices();
+        });
+        readSection(NORMALS_INDICES_SECTION, this::readNormalsIndices);
+        readSection(TEX_COORDS_KEYS_SECTION, () -> {
+            readTexCoordsKeys();
+            readTexCoordsIndices();
+        });
+    }
+
+    /*
+        Each task gets its own loader with a separate view of the input,
+        keys and indices are shared as they are not modified after being read
+     */
+    private <T> CompletableFuture<T> readAsync(Executor executor, SectionsSelector<T> selector) {
+        var loader = new ModelLoader(input.duplicate());
+        loader.direct = direct;
+        loader.wide = wide;
+        loader.quantized = quantized;
+        loader.deltaParts = deltaParts;
+        loader.sectionOffsets = sectionOffsets;
+        loader.sectionLengths = sectionLengths;
+        loader.pointsKeysTable = pointsKeysTable;
+        loader.pointsIndices = pointsIndices;
+        loader.normalsIndices = normalsIndices;
+        loader.texCoordsKeysTable = texCoordsKeysTable;
+        loader.texCoordsIndices = texCoordsIndices;
+
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return selector.select(loader);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    private static <T> T join(CompletableFuture<T> task) throws IOException {
+        try {
+            return task.join();
+        } catch (CompletionException e) {
+            var cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw e;
+        }
+    }
+
+    private SimpleModel assembleModel() {
+        var partsArrays = new int[parts.length][];
+        for (int i = 0; i < parts.length; i++)
+            partsArrays[i] = parts[i].array();
 
         float[] emptyArray = new float[0];
         return new SimpleModel(
-                loader.points, emptyArray, emptyArray, loader.points.length / POINT_SIZE,
-                loader.normals, emptyArray, loader.normals.length / NORMAL_SIZE,
-                loader.texCoords, emptyArray, emptyArray, loader.texCoords.length / TEX_COORD_SIZE,
-                loader.parts, loader.facesCount,
-                loader.materials, loader.nodes, loader.globalProperties
+                points.array(), emptyArray, emptyArray, points.limit() / POINT_SIZE,
+                normals.array(), emptyArray, normals.limit() / NORMAL_SIZE,
+                texCoords.array(), emptyArray, emptyArray, texCoords.limit() / TEX_COORD_SIZE,
+                partsArrays, facesCount,
+                materials, nodes, globalProperties
         );
     }
 
+    private SimpleBufferModel assembleBufferModel() {
+        return new SimpleBufferModel(points, normals, texCoords, parts,
+                materials, nodes, globalProperties);
+    }
+
+    /*
+        Files without sections directory are always decoded completely
+        (so selector only has to pick already decoded data)
+     */
+    private <T> T loadSelected(SectionsSelector<T> selector) throws IOException {
+        try {
+            if (!readDirectory()) readLegacyModel();
+            return selector.select(this);
+        } catch (BufferUnderflowException e) {
+            throw new EOFException("Unexpected end of model data at byte " + input.position());
+        }
+    }
+
+    private void readLegacyModel() throws IOException {
+        globalProperties = readProperties();
+        readPointsKeys();
+        readPointsIndices();
+        readNormalsIndices();
+        readTexCoordsKeys();
+        readTexCoordsIndices();
+        readPoints();
+        readNormals();
+        readTexCoords();
+        readFaces();
+        readMaterials();
+        readNodes();
+    }
+
+    /*
+        Returns false if model was written before sections directory was introduced
+        Such files are read sequentially from the beginning
+     */
+    private boolean readDirectory() throws IOException {
+        for (int i = 0; i < MAGIC.length; i++)
+            if (input.limit() <= i || input.get(i) != MAGIC[i]) return false;
+        input.position(MAGIC.length);
+
+        int version = readUnsignedByte();
+        if (version > FORMAT_VERSION) throw new IOException(
+                "Unsupported model format version " + version + " (expected " + FORMAT_VERSION + ")");
+
+        int flags = readUnsignedByte();
+        if ((flags & ~SUPPORTED_FLAGS) != 0) throw new IOException(
+                "Unsupported model format flags " + flags);
+        wide = (flags & FLAG_WIDE_INDICES) != 0;
+        quantized = (flags & FLAG_QUANTIZED) != 0;
+        deltaParts = (flags & FLAG_DELTA_PARTS) != 0;
+
+        int sectionsCount = input.getInt();
+        if (sectionsCount < PARTS_SECTION) throw new IOException(
+                "Model must contain at least " + PARTS_SECTION + " sections (got " + sectionsCount + ")");
+
+        sectionOffsets = new int[sectionsCount];
+        sectionLengths = new int[sectionsCount];
+        for (int i = 0; i < sectionsCount; i++) {
+            sectionOffsets[i] = input.getInt();
+            sectionLengths[i] = input.getInt();
+        }
+
+        return true;
+    }
+
+    private boolean isLegacy() {
+        return sectionOffsets == null;
+    }
+
+    private void readSection(int section, SectionReader reader) throws IOException {
+        if (isLegacy()) return;
+
+        int offset = sectionOffsets[section];
+        int end = offset + sectionLengths[section];
+        if (offset < 0 || end < offset || end > input.capacity()) throw new IOException(
+                "Section " + section + " is out of model data bounds");
+
+        // limit prevents bulk reads from running into the next section
+        input.limit(end).position(offset);
+        reader.read();
+        input.limit(input.capacity());
+    }
+
+    private interface SectionReader {
+        void read() throws IOException;
+    }
+
+    private interface SectionsSelector<T> {
+        T select(ModelLoader loader) throws IOException;
+    }
+
     private String[] readProperties() throws IOException {
-        int propertiesSize = readUnsignedByte();
+        int propertiesSize = readSmallCount();
         var properties = new String[propertiesSize];
 
         for (int i = 0; i < propertiesSize; i++)
-            properties[i] = input.readUTF();
+            properties[i] = readUTF();
 
         return properties;
     }
 
-    private void readPointsKeys() throws IOException {
-        pointsKeys = readFloatArrayWithSize(1);
+    private void readPointsKeys() {
+        int size = readCount();
+        pointsKeys = readScratchFloats(POINTS_KEYS_SCRATCH, size);
+        pointsKeysTable = createKeysTable(POINTS_KEYS_SCRATCH, pointsKeys, size);
     }
 
-    private void readPointsIndices() throws IOException {
-        pointsIndices = readFloatArray(pointsKeys.length * POINT_SIZE);
+    private void readPointsIndices() {
+        int size = pointsKeysTable.size() * POINT_SIZE;
+        pointsIndices = readScratchFloats(POINTS_INDICES_SCRATCH, size);
     }
 
-    private void readNormalsIndices() throws IOException {
-        normalsIndices = readFloatArrayWithSize(NORMAL_SIZE);
+    private void readNormalsIndices() {
+        int size = readCount() * NORMAL_SIZE;
+        normalsIndices = readScratchFloats(NORMALS_INDICES_SCRATCH, size);
     }
 
-    private void readTexCoordsKeys() throws IOException {
-        texCoordsKeys = readFloatArrayWithSize(1);
+    private void readTexCoordsKeys() {
+        int size = readCount();
+        texCoordsKeys = readScratchFloats(TEX_COORDS_KEYS_SCRATCH, size);
+        texCoordsKeysTable = createKeysTable(TEX_COORDS_KEYS_SCRATCH, texCoordsKeys, size);
     }
 
-    private void readTexCoordsIndices() throws IOException {
-        texCoordsIndices = readFloatArray(texCoordsKeys.length * TEX_COORD_SIZE);
+    private void readTexCoordsIndices() {
+        int size = texCoordsKeysTable.size() * TEX_COORD_SIZE;
+        texCoordsIndices = readScratchFloats(TEX_COORDS_INDICES_SCRATCH, size);
     }
 
-    private void readPoints() throws IOException {
-        int pointsSize = readUnsignedShort() * POINT_SIZE;
-        points = new float[pointsSize];
+    /*
+        Keys and indices are only needed while the model is decoded,
+        so they are read into buffers of the context (if there is one)
+        Returned array may be bigger than size
+     */
+    private float[] readScratchFloats(int scratch, int size) {
+        if (context == null) return readFloatArray(size);
+
+        var elements = context.floats(scratch, size);
+        var values = input.asFloatBuffer();
+        values.get(elements, 0, size);
+        skipFloats(values);
+
+        return elements;
+    }
+
+    private FloatIndexTable createKeysTable(int scratch, float[] keys, int size) {
+        return context == null ?
+                FloatIndexTable.of(keys, size) :
+                context.keysTable(scratch, keys, size);
+    }
+
+    private void readPoints() {
+        if (quantized) {
+            points = readQuantized(POINT_SIZE);
+            return;
+        }
+
+        int pointsSize = readCount() * POINT_SIZE;
+        points = readFloatsInBulk(pointsSize);
+
+        var values = input.asFloatBuffer();
+        int copied = min(values.remaining(), pointsSize);
+        int i = 0;
+        while (i < copied && !isPointsMarker(points.get(i))) i++;
+        values.position(i);
 
-        for (int i = 0; i < pointsSize; i++) {
-            var value = input.readFloat();
+        for (; i < pointsSize; i++) {
+            var value = values.get();
 
             if (Float.isNaN(value)) {
                 if (i < POINT_SIZE) throw new IllegalStateException(
                         "Unexpected Float.NaN before " + POINT_SIZE + " values were read"
                 );
 
-                System.arraycopy(
+                copyFloats(
                         points, i - POINT_SIZE,
                         points, i,
                         POINT_SIZE);
 
                 i += POINT_SIZE - 1;
             } else {
-                int pointsIndex = Arrays.binarySearch(pointsKeys, value);
+                int pointsIndex = pointsKeysTable.indexOf(value);
                 if (pointsIndex >= 0) {
-                    System.arraycopy(
+                    copyFloats(
                             pointsIndices, pointsIndex * POINT_SIZE,
                             points, i,
                             POINT_SIZE);
                     i += POINT_SIZE - 1;
-                } else points[i] = value;
+                } else points.put(i, value);
             }
         }
+
+        skipFloats(values);
+    }
+
+    private boolean isPointsMarker(float value) {
+        return Float.isNaN(value) || pointsKeysTable.contains(value);
     }
 
-    private void readNormals() throws IOException {
-        int normalsSize = readUnsignedShort() * NORMAL_SIZE;
-        normals = new float[normalsSize];
+    private void readNormals() {
+        if (quantized) {
+            readQuantizedNormals();
+            return;
+        }
+
+        int normalsSize = readCount() * NORMAL_SIZE;
+        normals = readFloatsInBulk(normalsSize);
+
+        var values = input.asFloatBuffer();
+        int copied = min(values.remaining(), normalsSize);
+        int i = 0;
+        // NaN is a marker too, so the condition is not inverted
+        while (i < copied && abs(normals.get(i)) <= 1.0f) i++;
+        values.position(i);
 
-        for (int i = 0; i < normalsSize; i++) {
-            var value = input.readFloat();
+        for (; i < normalsSize; i++) {
+            var value = values.get();
 
-            if (abs(value) <= 1.0f) normals[i] = value;
+            if (abs(value) <= 1.0f) normals.put(i, value);
             else if (value <= -2.0f) {
                 int normalsIndex = ((int) -value) - 2;
-                System.arraycopy(
+                copyFloats(
                         normalsIndices, normalsIndex * NORMAL_SIZE,
                         normals, i,
                         NORMAL_SIZE);
@@ -162,7 +802,7 @@ public final class ModelLoader {
 
                 int normalsToCopy = Float.isNaN(value) ? 1 : (int) value;
                 for (int j = 0; j < normalsToCopy; j++)
-                    System.arraycopy(
+                    copyFloats(
                             normals, i - NORMAL_SIZE,
                             normals, i + j * NORMAL_SIZE,
                             NORMAL_SIZE);
@@ -170,75 +810,318 @@ public final class ModelLoader {
                 i += normalsToCopy * NORMAL_SIZE - 1;
             }
         }
+
+        skipFloats(values);
     }
 
-    private void readTexCoords() throws IOException {
-        int texCoordsSize = readUnsignedShort() * TEX_COORD_SIZE;
-        texCoords = new float[texCoordsSize];
+    private void readTexCoords() {
+        if (quantized) {
+            texCoords = readQuantized(TEX_COORD_SIZE);
+            return;
+        }
+
+        int texCoordsSize = readCount() * TEX_COORD_SIZE;
+        texCoords = readFloatsInBulk(texCoordsSize);
 
-        for (int i = 0; i < texCoordsSize; i++) {
-            var value = input.readFloat();
+        var values = input.asFloatBuffer();
+        int copied = min(values.remaining(), texCoordsSize);
+        int i = 0;
+        while (i < copied && !isTexCoordsMarker(texCoords.get(i))) i++;
+        values.position(i);
+
+        for (; i < texCoordsSize; i++) {
+            var value = values.get();
 
             if (Float.isNaN(value)) {
                 if (i < TEX_COORD_SIZE) throw new IllegalStateException(
                         "Unexpected Float.NaN before " + TEX_COORD_SIZE + " values were read"
                 );
 
-                System.arraycopy(
+                copyFloats(
                         texCoords, i - TEX_COORD_SIZE,
                         texCoords, i,
                         TEX_COORD_SIZE);
 
                 i += TEX_COORD_SIZE - 1;
             } else {
-                int texCoordsIndex = Arrays.binarySearch(texCoordsKeys, value);
+                int texCoordsIndex = texCoordsKeysTable.indexOf(value);
                 if (texCoordsIndex >= 0) {
-                    System.arraycopy(
+                    copyFloats(
                             texCoordsIndices, texCoordsIndex * TEX_COORD_SIZE,
                             texCoords, i,
                             TEX_COORD_SIZE);
                     i += TEX_COORD_SIZE - 1;
-                } else texCoords[i] = value;
+                } else texCoords.put(i, value);
             }
         }
+
+        skipFloats(values);
     }
 
-    private void readFaces() throws IOException {
+    /*
+        Minimum and step of each component (floats) go before the values,
+        each value is an unsigned short q, component = minimum + q * step
+     */
+    private FloatBuffer readQuantized(int vertexSize) {
+        int verticesCount = readCount();
+        var minimum = readFloatArray(vertexSize);
+        var step = readFloatArray(vertexSize);
+
+        int size = verticesCount * vertexSize;
+        var destination = allocateFloats(size);
+        var values = readShorts(size);
+        for (int i = 0, index = 0; i < verticesCount; i++)
+            for (int j = 0; j < vertexSize; j++, index++) {
+                int value = Short.toUnsignedInt(values[index]);
+                destination.put(index, minimum[j] + value * step[j]);
+            }
+
+        return destination;
+    }
+
+    /*
+        Each normal is 2 shorts: the normal projected onto the octahedron |x| + |y| + |z| = 1,
+        with the lower half folded over the upper one, and scaled to [-32767; 32767]
+     */
+    private void readQuantizedNormals() {
+        int normalsCount = readCount();
+        normals = allocateFloats(normalsCount * NORMAL_SIZE);
+
+        var values = readShorts(normalsCount * 2);
+        for (int i = 0; i < normalsCount; i++) {
+            float x = Math.max(values[i * 2], -MAX_SNORM16) * SNORM16_SCALE;
+            float y = Math.max(values[i * 2 + 1], -MAX_SNORM16) * SNORM16_SCALE;
+            float z = 1.0f - abs(x) - abs(y);
+
+            // moves x and y towards 0 (no branches, as signs are random)
+            float fold = Math.max(-z, 0.0f);
+            x -= Math.copySign(fold, x);
+            y -= Math.copySign(fold, y);
+
+            float scale = 1.0f / (float) Math.sqrt(x * x + y * y + z * z);
+            int index = i * NORMAL_SIZE;
+            normals.put(index, x * scale);
+            normals.put(index + 1, y * scale);
+            normals.put(index + 2, z * scale);
+        }
+    }
+
+    // returned array is temporary and may be bigger than size
+    private short[] readShorts(int size) {
+        var elements = context == null ? new short[size] : context.shorts(size);
+
+        var values = input.asShortBuffer();
+        values.get(elements, 0, size);
+        skipShorts(values);
+
+        return elements;
+    }
+
+    private boolean isTexCoordsMarker(float value) {
+        return Float.isNaN(value) || texCoordsKeysTable.contains(value);
+    }
+
+    private void readFaces() {
         int facesSize = readUnsignedByte();
-        parts = new short[facesSize][];
+        parts = new IntBuffer[facesSize];
+        facesCount = new int[facesSize];
 
-        for (int i = 0; i < facesSize; i++)
+        for (int i = 0; i < facesSize; i++) {
             parts[i] = readIndices();
+            facesCount[i] = parts[i].limit() / FACE_SIZE;
+        }
     }
 
-    private short[] readIndices() throws IOException {
-        int indicesSize = readUnsignedShort() * FACE_SIZE;
-        var indices = new short[indicesSize];
+    private void readParts() throws IOException {
+        if (isLegacy()) return;
+
+        int partsSize = getPartsCount();
+        parts = new IntBuffer[partsSize];
+        facesCount = new int[partsSize];
+
+        for (int i = 0; i < partsSize; i++) {
+            parts[i] = readPart(i);
+            facesCount[i] = parts[i].limit() / FACE_SIZE;
+        }
+    }
 
-        short previousValue = -1;
+    private IntBuffer readPart(int partIndex) throws IOException {
+        Objects.checkIndex(partIndex, getPartsCount());
+        if (isLegacy()) return parts[partIndex];
+
+        var indices = new IntBuffer[1];
+        readSection(PARTS_SECTION + partIndex, () -> indices[0] = readIndices());
+        return indices[0];
+    }
+
+    private int getPartsCount() {
+        return isLegacy() ? parts.length : sectionOffsets.length - PARTS_SECTION;
+    }
+
+    private IntBuffer readIndices() {
+        int indicesSize = readCount() * FACE_SIZE;
+        if (deltaParts) return readDeltaIndices(indicesSize);
+
+        return wide ?
+                readWideIndices(indicesSize) :
+                readNarrowIndices(indicesSize);
+    }
+
+    /*
+        Each index is the difference from the previous one (the first one is counted from 0),
+        zigzag-encoded (0, -1, 1, -2, 2... become 0, 1, 2, 3, 4...) and written as a varint:
+        7 bits per byte starting from the lowest ones, the high bit is set in all bytes but the last
+     */
+    private IntBuffer readDeltaIndices(int indicesSize) {
+        var indices = direct ? temporaryInts(indicesSize) : newInts(indicesSize);
+
+        int end;
+        try {
+            end = input.hasArray() ?
+                    readDeltaIndices(input.array(), input.arrayOffset(), indices, indicesSize) :
+                    readDeltaIndices(input, indices, indicesSize);
+        } catch (IndexOutOfBoundsException e) {
+            throw new BufferUnderflowException();
+        }
+        // the backing array may extend past the limit
+        if (end > input.limit()) throw new BufferUnderflowException();
+        input.position(end);
+
+        return wrapIndices(indices, indicesSize);
+    }
+
+    // returns position after the last index (heap input)
+    private int readDeltaIndices(byte[] values, int offset, int[] indices, int indicesSize) {
+        int position = input.position() + offset;
+        int previousValue = 0;
+
+        for (int i = 0; i < indicesSize; i++) {
+            int value = values[position++];
+            if (value < 0) {
+                value &= 0x7F;
+                int shift = 7;
+                int next;
+                do {
+                    next = values[position++];
+                    value |= (next & 0x7F) << shift;
+                    shift += 7;
+                } while (next < 0);
+            }
+
+            previousValue += (value >>> 1) ^ -(value & 1);
+            indices[i] = previousValue;
+        }
+
+        return position - offset;
+    }
+
+    // returns position after the last index (direct or memory-mapped input)
+    private static int readDeltaIndices(ByteBuffer values, int[] indices, int indicesSize) {
+        int position = values.position();
+        int previousValue = 0;
 
         for (int i = 0; i < indicesSize; i++) {
-            short index = input.readShort();
+            int value = values.get(position++);
+            if (value < 0) {
+                value &= 0x7F;
+                int shift = 7;
+                int next;
+                do {
+                    next = values.get(position++);
+                    value |= (next & 0x7F) << shift;
+                    shift += 7;
+                } while (next < 0);
+            }
+
+            previousValue += (value >>> 1) ^ -(value & 1);
+            indices[i] = previousValue;
+        }
+
+        return position;
+    }
+
+    private IntBuffer readWideIndices(int indicesSize) {
+        var indices = readIntsInBulk(indicesSize);
+
+        var values = input.asIntBuffer();
+        int copied = min(values.remaining(), indicesSize);
+        int i = 0;
+        while (i < copied && indices.get(i) >= 0) i++;
+        values.position(i);
+
+        int previousValue = i == 0 ? -1 : indices.get(i - 1);
+
+        for (; i < indicesSize; i++) {
+            int index = values.get();
 
-            // index may contain negative number due to integer overflow
-            boolean isOverflowed = abs(index) + i > indicesSize;
-            if (index < 0 && !isOverflowed) {
+            // indices are never negative, so there is no need to check for overflow
+            if (index < 0) {
+                for (int j = 0; j < -index; j++)
+                    indices.put(i++, ++previousValue);
+                i--;
+            } else {
+                indices.put(i, index);
+                previousValue = index;
+            }
+        }
+
+        skipInts(values);
+        return indices;
+    }
+
+    private IntBuffer readNarrowIndices(int indicesSize) {
+        // if indices are copied to a direct buffer afterwards, the array is temporary
+        var indices = direct ? temporaryInts(indicesSize) : newInts(indicesSize);
+
+        var values = input.asShortBuffer();
+        int copied = min(values.remaining(), indicesSize);
+        int i = 0;
+        for (; i < copied; i++) {
+            short index = values.get(i);
+            if (isProgression(index, i, indicesSize)) break;
+            indices[i] = Short.toUnsignedInt(index);
+        }
+        values.position(i);
+
+        int previousValue = i == 0 ? -1 : indices[i - 1];
+
+        for (; i < indicesSize; i++) {
+            short index = values.get();
+
+            if (isProgression(index, i, indicesSize)) {
                 int valuesToCopy = abs(index);
 
                 for (int j = 0; j < valuesToCopy; j++)
                     indices[i++] = ++previousValue;
                 i--;
             } else {
-                indices[i] = index;
-                previousValue = index;
+                // due to integer overflow, a negative number may be presented in index
+                previousValue = Short.toUnsignedInt(index);
+                indices[i] = previousValue;
             }
         }
 
-        return indices;
+        skipShorts(values);
+        return wrapIndices(indices, indicesSize);
+    }
+
+    // indices array is either returned or copied to a direct buffer
+    private IntBuffer wrapIndices(int[] indices, int indicesSize) {
+        if (!direct) return IntBuffer.wrap(indices);
+
+        var directIndices = allocateInts(indicesSize);
+        directIndices.duplicate().put(indices, 0, indicesSize);
+        return directIndices;
+    }
+
+    private static boolean isProgression(short index, int i, int indicesSize) {
+        // index may contain negative number due to integer overflow
+        boolean isOverflowed = abs(index) + i > indicesSize;
+        return index < 0 && !isOverflowed;
     }
 
     private void readMaterials() throws IOException {
-        int materialsSize = readUnsignedByte();
+        int materialsSize = readSmallCount();
         materials = new SimpleMaterial[materialsSize];
 
         for (int i = 0; i < materialsSize; i++) {
@@ -247,11 +1130,11 @@ public final class ModelLoader {
             var specular = readColor();
 
             int opacity = readUnsignedByte();
-            float shininess = input.readFloat();
+            float shininess = input.getFloat();
 
-            String diffuseTexture = input.readUTF();
+            String diffuseTexture = readUTF();
             if (diffuseTexture.isBlank()) diffuseTexture = "";
-            String specularTexture = input.readUTF();
+            String specularTexture = readUTF();
             if (specularTexture.isBlank()) specularTexture = "";
 
             materials[i] = new SimpleMaterial(ambient, diffuse, specular,
@@ -259,7 +1142,7 @@ public final class ModelLoader {
         }
     }
 
-    private int[] readColor() throws IOException {
+    private int[] readColor() {
         return new int[] {
                 readUnsignedByte(),
                 readUnsignedByte(),
@@ -267,83 +1150,309 @@ public final class ModelLoader {
         };
     }
 
-    private int readUnsignedByte() throws IOException {
-        return Byte.toUnsignedInt(input.readByte());
+    private int readUnsignedByte() {
+        return Byte.toUnsignedInt(input.get());
+    }
+
+    private int readUnsignedShort() {
+        return Short.toUnsignedInt(input.getShort());
+    }
+
+    // sizes of vertices, keys and parts
+    private int readCount() {
+        return wide ? input.getInt() : readUnsignedShort();
     }
 
-    private int readUnsignedShort() throws IOException {
-        return Short.toUnsignedInt(input.readShort());
+    // sizes of properties, materials, nodes and node parts, indices of parts and materials
+    private int readSmallCount() {
+        return wide ? input.getInt() : readUnsignedByte();
     }
 
     private void readNodes() throws IOException {
-        int nodesSize = readUnsignedByte();
-        nodes = new SimpleNode[nodesSize];
+        readNodeTable();
+        nodes = nodeTable.toNodes();
+    }
+
+    /*
+        Every node is followed by the number of its children and the children themselves
+        Instead of recursion, the stack keeps every node on the path from the root
+        together with the number of its children which are still to be read
+
+        Nodes are counted first, so that arrays of the table are allocated only once,
+        equal ids and properties are decoded only once and share the same instance
+     */
+    private void readNodeTable() throws IOException {
+        var builder = countNodes();
+        var strings = new StringTable();
+
+        var parentsStack = new int[INITIAL_NODES_DEPTH];
+        var childrenLeft = new int[INITIAL_NODES_DEPTH];
+        parentsStack[0] = NO_PARENT;
+        childrenLeft[0] = readSmallCount();
+        int depth = 1;
+
+        while (depth > 0) {
+            if (childrenLeft[depth - 1] == 0) {
+                depth--;
+                continue;
+            }
+            childrenLeft[depth - 1]--;
+
+            int node = builder.addNode(readUTF(strings), parentsStack[depth - 1]);
+            // translation, rotation and scale are stored in the same order as in the table
+            readFloats(builder.getTransforms(), node * TRANSFORM_SIZE, TRANSFORM_SIZE);
+
+            int propertiesSize = readSmallCount();
+            for (int i = 0; i < propertiesSize; i++)
+                builder.addProperty(readUTF(strings));
+
+            int nodePartsSize = readSmallCount();
+            for (int i = 0; i < nodePartsSize; i++)
+                builder.addNodePart(readSmallCount(), readSmallCount());
 
-        for (int i = 0; i < nodesSize; i++)
-            nodes[i] = readNode();
+            if (depth == parentsStack.length) {
+                parentsStack = Arrays.copyOf(parentsStack, depth * 2);
+                childrenLeft = Arrays.copyOf(childrenLeft, depth * 2);
+            }
+            parentsStack[depth] = node;
+            childrenLeft[depth] = readSmallCount();
+            depth++;
+        }
+
+        nodeTable = builder.build();
     }
 
-    private SimpleNode readNode() throws IOException {
-        String id = input.readUTF();
+    // skips the nodes the same way readNodeTable reads them, input position is left unchanged
+    private NodeTableBuilder countNodes() {
+        int start = input.position();
+        int nodesCount = 0;
+        int nodePartsCount = 0;
+        int propertiesCount = 0;
+
+        // only the number of children left is needed for each level
+        var childrenLeft = new int[INITIAL_NODES_DEPTH];
+        childrenLeft[0] = readSmallCount();
+        int depth = 1;
+
+        while (depth > 0) {
+            if (childrenLeft[depth - 1] == 0) {
+                depth--;
+                continue;
+            }
+            childrenLeft[depth - 1]--;
+            nodesCount++;
+
+            skipUTF();
+            skipBytes(TRANSFORM_SIZE * Float.BYTES);
+
+            int propertiesSize = readSmallCount();
+            for (int i = 0; i < propertiesSize; i++)
+                skipUTF();
+            propertiesCount += propertiesSize;
+
+            int nodePartsSize = readSmallCount();
+            for (int i = 0; i < nodePartsSize * 2; i++)
+                readSmallCount();
+            nodePartsCount += nodePartsSize;
+
+            if (depth == childrenLeft.length)
+                childrenLeft = Arrays.copyOf(childrenLeft, depth * 2);
+            childrenLeft[depth] = readSmallCount();
+            depth++;
+        }
 
-        var translation = readVector();
-        var rotation = readQuaternion();
-        var scale = readVector();
+        input.position(start);
+        return new NodeTableBuilder(nodesCount, nodePartsCount, propertiesCount);
+    }
 
-        var properties = readProperties();
+    private void readFloats(float[] destination, int offset, int length) {
+        var values = input.asFloatBuffer();
+        values.get(destination, offset, length);
+        skipFloats(values);
+    }
 
-        var nodeParts = readNodeParts();
+    private float[] readFloatArray(int size) {
+        float[] elements = new float[size];
+        readFloats(elements, 0, size);
+        return elements;
+    }
 
-        int childrenLength = readUnsignedByte();
-        var children = new SimpleNode[childrenLength];
-        for (int i = 0; i < childrenLength; i++)
-            children[i] = readNode();
+    /*
+        Allocates buffer of specified size and copies into it as many values as it can hold
+        (or as many as are left), input position is left unchanged
+        Direct buffer is filled in native byte order, see copyInBulk
+        Values which are copied after the first optimization marker are garbage
+        and must be overwritten by the caller
+     */
+    private FloatBuffer readFloatsInBulk(int size) {
+        int copied = min(input.remaining() / Float.BYTES, size);
+
+        if (!direct) {
+            var destination = newFloats(size);
+            input.asFloatBuffer().get(destination, 0, copied);
+            return FloatBuffer.wrap(destination);
+        }
 
-        return new SimpleNode(id, translation, rotation, scale, nodeParts, children, properties);
+        // bits of floats are copied as ints
+        var destination = allocateDirect(size * Float.BYTES);
+        copyInBulk(destination.asIntBuffer(), copied);
+        return destination.asFloatBuffer();
     }
 
-    private float[] readVector() throws IOException {
-        return new float[] {
-                input.readFloat(),
-                input.readFloat(),
-                input.readFloat()
-        };
+    private IntBuffer readIntsInBulk(int size) {
+        int copied = min(input.remaining() / Integer.BYTES, size);
+
+        if (!direct) {
+            var destination = newInts(size);
+            input.asIntBuffer().get(destination, 0, copied);
+            return IntBuffer.wrap(destination);
+        }
+
+        var destination = allocateInts(size);
+        copyInBulk(destination, copied);
+        return destination;
     }
 
-    private float[] readQuaternion() throws IOException {
-        return new float[] {
-                input.readFloat(),
-                input.readFloat(),
-                input.readFloat(),
-                input.readFloat()
-        };
+    /*
+        Copies specified amount of values from the input into the direct buffer by chunks,
+        so that bytes of big-endian values are swapped in bulk instead of value by value
+        Positions of the input and the buffer are left unchanged
+     */
+    private void copyInBulk(IntBuffer destination, int count) {
+        var source = input.asIntBuffer();
+        var target = destination.duplicate();
+        int[] chunk = temporaryInts(min(count, BULK_COPY_CHUNK_SIZE));
+        int chunkSize = min(chunk.length, BULK_COPY_CHUNK_SIZE);
+
+        for (int copied = 0; copied < count; copied += chunkSize) {
+            int length = min(count - copied, chunkSize);
+            source.get(chunk, 0, length);
+            target.put(chunk, 0, length);
+        }
     }
 
-    private SimpleNodePart[] readNodeParts() throws IOException {
-        int nodePartsSize = readUnsignedByte();
-        var nodeParts = new SimpleNodePart[nodePartsSize];
+    private FloatBuffer allocateFloats(int size) {
+        if (!direct) return FloatBuffer.wrap(newFloats(size));
 
-        for (int i = 0; i < nodePartsSize; i++)
-            nodeParts[i] = new SimpleNodePart(
-                    readUnsignedByte(),
-                    readUnsignedByte()
-            );
+        return allocateDirect(size * Float.BYTES).asFloatBuffer();
+    }
 
-        return nodeParts;
+    private IntBuffer allocateInts(int size) {
+        if (!direct) return IntBuffer.wrap(newInts(size));
+
+        return allocateDirect(size * Integer.BYTES).asIntBuffer();
     }
 
-    private float[] readFloatArrayWithSize(int multiplier) throws IOException {
-        int size = readUnsignedShort() * multiplier;
-        return readFloatArray(size);
+    private ByteBuffer allocateDirect(int capacity) {
+        var destination = context == null ?
+                ByteBuffer.allocateDirect(capacity) :
+                context.allocateDirect(capacity);
+
+        // values are stored in native byte order, so that they are read without swapping bytes
+        // (by the caller as well as by native code), big-endian input is converted while copied
+        return destination.order(ByteOrder.nativeOrder());
     }
 
-    private float[] readFloatArray(int size) throws IOException {
-        float[] elements = new float[size];
+    private float[] newFloats(int size) {
+        if (context != null) context.allocated((long) size * Float.BYTES);
+        return new float[size];
+    }
+
+    private int[] newInts(int size) {
+        if (context != null) context.allocated((long) size * Integer.BYTES);
+        return new int[size];
+    }
 
-        for (int i = 0; i < size; i++)
-            elements[i] = input.readFloat();
+    private int[] temporaryInts(int size) {
+        return context == null ? new int[size] : context.ints(size);
+    }
 
-        return elements;
+    private static void copyFloats(FloatBuffer source, int sourceIndex,
+                                   FloatBuffer destination, int destinationIndex,
+                                   int length) {
+        for (int i = 0; i < length; i++)
+            destination.put(destinationIndex + i, source.get(sourceIndex + i));
+    }
+
+    private static void copyFloats(float[] source, int sourceIndex,
+                                   FloatBuffer destination, int destinationIndex,
+                                   int length) {
+        for (int i = 0; i < length; i++)
+            destination.put(destinationIndex + i, source[sourceIndex + i]);
+    }
+
+    private void skipFloats(FloatBuffer values) {
+        input.position(input.position() + values.position() * Float.BYTES);
+    }
+
+    private void skipShorts(ShortBuffer values) {
+        input.position(input.position() + values.position() * Short.BYTES);
+    }
+
+    private void skipInts(IntBuffer values) {
+        input.position(input.position() + values.position() * Integer.BYTES);
+    }
+
+    // same as DataInputStream.readUTF, but reads from the buffer
+    private String readUTF() throws UTFDataFormatException {
+        int length = readUnsignedShort();
+        if (length > input.remaining()) throw new BufferUnderflowException();
+
+        var chars = context == null ? new char[length] : context.chars(length);
+        int charsCount = 0;
+        int end = input.position() + length;
+
+        while (input.position() < end) {
+            int a = readUnsignedByte();
+
+            if (a < 0x80) chars[charsCount++] = (char) a;
+            else if ((a & 0xE0) == 0xC0 && input.position() + 1 <= end) {
+                int b = readUTFContinuation();
+                chars[charsCount++] = (char) (((a & 0x1F) << 6) | b);
+            } else if ((a & 0xF0) == 0xE0 && input.position() + 2 <= end) {
+                int b = readUTFContinuation();
+                int c = readUTFContinuation();
+                chars[charsCount++] = (char) (((a & 0x0F) << 12) | (b << 6) | c);
+            } else throw new UTFDataFormatException(
+                    "Malformed input around byte " + (input.position() - 1));
+        }
+
+        return new String(chars, 0, charsCount);
+    }
+
+    // returns the same instance for equal strings read with the same table
+    private String readUTF(StringTable strings) throws UTFDataFormatException {
+        int start = input.position();
+        int length = readUnsignedShort();
+        int offset = input.position();
+        if (length > input.remaining()) throw new BufferUnderflowException();
+
+        var string = strings.get(input, offset, length);
+        if (string != null) {
+            input.position(offset + length);
+            return string;
+        }
+
+        input.position(start);
+        string = readUTF();
+        strings.put(input, offset, length, string);
+        return string;
+    }
+
+    private void skipUTF() {
+        skipBytes(readUnsignedShort());
+    }
+
+    private void skipBytes(int count) {
+        if (count > input.remaining()) throw new BufferUnderflowException();
+        input.position(input.position() + count);
+    }
+
+    private int readUTFContinuation() throws UTFDataFormatException {
+        int value = readUnsignedByte();
+        if ((value & 0xC0) != 0x80) throw new UTFDataFormatException(
+                "Malformed input around byte " + (input.position() - 1));
+        return value & 0x3F;
     }
 
 }
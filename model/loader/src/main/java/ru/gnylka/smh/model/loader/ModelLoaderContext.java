@@ -0,0 +1,256 @@
+package ru.gnylka.smh.model.loader;
+
+import ru.gnylka.smh.model.data.SimpleBufferModel;
+import ru.gnylka.smh.model.data.SimpleModel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Loads models one after another reusing buffers between loads
+ * <br>
+ * Input data (when it is not mapped from a file), keys, indices and strings
+ * are decoded into buffers kept by the context, so that only data returned as a part
+ * of the model is allocated. It can also be decoded into storage provided by the caller
+ * <br>
+ * Context counts bytes of the buffers it allocates and reuses, which can be used to
+ * measure allocation per load<br>
+ * Context is not thread-safe, each thread should use its own context
+ */
+public final class ModelLoaderContext {
+
+    private static final int INITIAL_INPUT_SIZE = 8 * 1024;
+
+    static final int POINTS_KEYS_SCRATCH = 0;
+    static final int POINTS_INDICES_SCRATCH = 1;
+    static final int NORMALS_INDICES_SCRATCH = 2;
+    static final int TEX_COORDS_KEYS_SCRATCH = 3;
+    static final int TEX_COORDS_INDICES_SCRATCH = 4;
+    private static final int FLOATS_SCRATCH_COUNT = 5;
+
+    private byte[] inputBytes = new byte[0];
+    private final float[][] floats = new float[FLOATS_SCRATCH_COUNT][0];
+    private final FloatIndexTable[] keysTables = new FloatIndexTable[FLOATS_SCRATCH_COUNT];
+    private int[] ints = new int[0];
+    private short[] shorts = new short[0];
+    private char[] chars = new char[0];
+
+    // caller's storage for the current load, null if there is no such storage
+    private ByteBuffer storage;
+
+    private long loadsCount;
+    private long allocatedBytes;
+    private long reusedBytes;
+
+    /**
+     * Loads model from specified input stream
+     * <br>
+     * Works the same way as {@link ModelLoader#load(InputStream)}
+     *
+     * @param inputStream stream to load model from
+     *
+     * @return model object
+     *
+     * @throws IOException if IOException occurs
+     */
+    public SimpleModel load(InputStream inputStream) throws IOException {
+        loadsCount++;
+        return new ModelLoader(readInput(inputStream), this).loadModel();
+    }
+
+    /**
+     * Loads model from specified file
+     * <br>
+     * Works the same way as {@link ModelLoader#load(Path)}
+     *
+     * @param path file to load model from
+     *
+     * @return model object
+     *
+     * @throws IOException if IOException occurs
+     */
+    public SimpleModel load(Path path) throws IOException {
+        loadsCount++;
+        return ModelLoader.open(path, this).loadModel();
+    }
+
+    /**
+     * Loads model from specified input stream into caller's storage
+     * <br>
+     * Vertices and parts are stored in consecutive slices of the storage
+     * starting from its position, the position is advanced past them.
+     * Values are stored in native byte order whatever the order of the storage is.
+     * If the storage runs out of space, the rest is put into new direct buffers.
+     * Storage must not be changed as long as the model is used
+     *
+     * @param inputStream stream to load model from
+     * @param storage buffer to store vertices and parts in (for instance, direct buffer
+     *                which is cleared before loading the next model)
+     *
+     * @return model object backed by slices of the storage
+     *
+     * @throws IOException if IOException occurs
+     */
+    public SimpleBufferModel load(InputStream inputStream, ByteBuffer storage) throws IOException {
+        requireNonNull(storage);
+
+        loadsCount++;
+        var loader = new ModelLoader(readInput(inputStream), this);
+        return loadInto(loader, storage);
+    }
+
+    /**
+     * Loads model from specified file into caller's storage
+     * <br>
+     * Works the same way as {@link #load(InputStream, ByteBuffer)}
+     *
+     * @param path file to load model from
+     * @param storage buffer to store vertices and parts in (for instance, direct buffer
+     *                which is cleared before loading the next model)
+     *
+     * @return model object backed by slices of the storage
+     *
+     * @throws IOException if IOException occurs
+     */
+    public SimpleBufferModel load(Path path, ByteBuffer storage) throws IOException {
+        requireNonNull(storage);
+
+        loadsCount++;
+        return loadInto(ModelLoader.open(path, this), storage);
+    }
+
+    private SimpleBufferModel loadInto(ModelLoader loader, ByteBuffer storage) throws IOException {
+        this.storage = storage;
+        try {
+            return loader.loadBufferModel();
+        } finally {
+            this.storage = null;
+        }
+    }
+
+    /**
+     * @return the number of models loaded with this context
+     */
+    public long getLoadsCount() {
+        return loadsCount;
+    }
+
+    /**
+     * @return bytes of buffers (including the ones returned as a part of models)
+     * allocated by loads with this context
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return bytes of buffers which were reused by loads with this context
+     * instead of being allocated (including slices of caller's storage)
+     */
+    public long getReusedBytes() {
+        return reusedBytes;
+    }
+
+    // the stream is read up to the end of the model, see ModelLoader#readHead
+    ByteBuffer readInput(InputStream inputStream) throws IOException {
+        var head = ModelLoader.readHead(inputStream);
+        long modelSize = ModelLoader.getModelSize(head);
+
+        int capacity = modelSize < 0 ? Math.max(INITIAL_INPUT_SIZE, head.length) : (int) modelSize;
+        if (inputBytes.length < capacity) {
+            allocated(capacity);
+            inputBytes = new byte[capacity];
+        } else reused(capacity);
+        System.arraycopy(head, 0, inputBytes, 0, head.length);
+
+        int size = head.length;
+        if (modelSize >= 0) size += inputStream.readNBytes(inputBytes, size, capacity - size);
+        else while (true) {
+            if (size == inputBytes.length) {
+                allocated(inputBytes.length * 2L);
+                inputBytes = Arrays.copyOf(inputBytes, inputBytes.length * 2);
+            }
+
+            int read = inputStream.read(inputBytes, size, inputBytes.length - size);
+            if (read < 0) break;
+            size += read;
+        }
+
+        // slice, so that capacity of the buffer is the size of the model
+        return ByteBuffer.wrap(inputBytes, 0, size).slice();
+    }
+
+    float[] floats(int scratch, int size) {
+        if (floats[scratch].length < size) {
+            allocated((long) size * Float.BYTES);
+            floats[scratch] = new float[size];
+        } else reused((long) size * Float.BYTES);
+
+        return floats[scratch];
+    }
+
+    FloatIndexTable keysTable(int scratch, float[] keys, int size) {
+        if (keysTables[scratch] == null) keysTables[scratch] = new FloatIndexTable();
+        var table = keysTables[scratch];
+
+        // keys and indices arrays
+        long bytes = 2L * FloatIndexTable.getCapacity(size) * Integer.BYTES;
+        if (table.getCapacity() < FloatIndexTable.getCapacity(size)) allocated(bytes);
+        else reused(bytes);
+
+        return table.fill(keys, size);
+    }
+
+    int[] ints(int size) {
+        if (ints.length < size) {
+            allocated((long) size * Integer.BYTES);
+            ints = new int[size];
+        } else reused((long) size * Integer.BYTES);
+
+        return ints;
+    }
+
+    short[] shorts(int size) {
+        if (shorts.length < size) {
+            allocated((long) size * Short.BYTES);
+            shorts = new short[size];
+        } else reused((long) size * Short.BYTES);
+
+        return shorts;
+    }
+
+    char[] chars(int size) {
+        if (chars.length < size) {
+            allocated((long) size * Character.BYTES);
+            chars = new char[size];
+        } else reused((long) size * Character.BYTES);
+
+        return chars;
+    }
+
+    ByteBuffer allocateDirect(int capacity) {
+        if (storage == null || storage.remaining() < capacity) {
+            allocated(capacity);
+            return ByteBuffer.allocateDirect(capacity);
+        }
+
+        reused(capacity);
+        var slice = storage.slice().limit(capacity).slice();
+        storage.position(storage.position() + capacity);
+        return slice;
+    }
+
+    void allocated(long bytes) {
+        allocatedBytes += bytes;
+    }
+
+    void reused(long bytes) {
+        reusedBytes += bytes;
+    }
+
+}
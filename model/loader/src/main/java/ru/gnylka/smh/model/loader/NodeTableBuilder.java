@@ -0,0 +1,76 @@
+package ru.gnylka.smh.model.loader;
+
+import ru.gnylka.smh.model.data.SimpleNodeTable;
+
+import static ru.gnylka.smh.model.data.SimpleNodeTable.TRANSFORM_SIZE;
+
+/*
+    Fills arrays of SimpleNodeTable, which are allocated once with the exact sizes
+    (ModelLoader counts nodes, node parts and properties before reading them)
+    Nodes must be added in depth-first order, properties and node parts of a node
+    must be added right after the node itself
+ */
+final class NodeTableBuilder {
+
+    private final String[] ids;
+    private final float[] transforms;
+    private final int[] parents;
+    private int nodesCount;
+
+    private final int[] nodePartsOffsets;
+    private final int[] nodeParts;
+
+    private final int[] propertiesOffsets;
+    private final String[] properties;
+
+    NodeTableBuilder(int nodesCount, int nodePartsCount, int propertiesCount) {
+        ids = new String[nodesCount];
+        transforms = new float[nodesCount * TRANSFORM_SIZE];
+        parents = new int[nodesCount];
+
+        nodePartsOffsets = new int[nodesCount + 1];
+        nodeParts = new int[nodePartsCount * 2];
+
+        propertiesOffsets = new int[nodesCount + 1];
+        properties = new String[propertiesCount];
+    }
+
+    /**
+     * @return index of the added node, its transform must be written
+     * into {@link #getTransforms()} starting from index * TRANSFORM_SIZE
+     */
+    int addNode(String id, int parent) {
+        int node = nodesCount++;
+        ids[node] = id;
+        parents[node] = parent;
+        nodePartsOffsets[nodesCount] = nodePartsOffsets[node];
+        propertiesOffsets[nodesCount] = propertiesOffsets[node];
+
+        return node;
+    }
+
+    float[] getTransforms() {
+        return transforms;
+    }
+
+    void addProperty(String property) {
+        int size = propertiesOffsets[nodesCount];
+        properties[size] = property;
+        propertiesOffsets[nodesCount] = size + 1;
+    }
+
+    void addNodePart(int partIndex, int materialIndex) {
+        int size = nodePartsOffsets[nodesCount];
+        nodeParts[size] = partIndex;
+        nodeParts[size + 1] = materialIndex;
+        nodePartsOffsets[nodesCount] = size + 2;
+    }
+
+    SimpleNodeTable build() {
+        assert nodesCount == ids.length : "All counted nodes must be added";
+
+        return new SimpleNodeTable(ids, transforms, parents,
+                nodePartsOffsets, nodeParts, propertiesOffsets, properties);
+    }
+
+}
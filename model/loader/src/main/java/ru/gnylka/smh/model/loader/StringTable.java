@@ -0,0 +1,79 @@
+package ru.gnylka.smh.model.loader;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/*
+    Open-addressing hash table mapping encoded strings (bytes of the input) to decoded ones,
+    so that repeated strings are decoded only once and share the same instance
+ */
+final class StringTable {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private byte[][] keys = new byte[INITIAL_CAPACITY][];
+    private String[] values = new String[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * @return string which was put with the same bytes or null if there is no such string
+     */
+    String get(ByteBuffer input, int offset, int length) {
+        int mask = keys.length - 1;
+        int slot = hash(input, offset, length) & mask;
+
+        while (keys[slot] != null) {
+            if (equal(keys[slot], input, offset, length)) return values[slot];
+            slot = (slot + 1) & mask;
+        }
+
+        return null;
+    }
+
+    void put(ByteBuffer input, int offset, int length, String value) {
+        if ((size + 1) * 2 > keys.length) grow();
+
+        var key = new byte[length];
+        input.duplicate().position(offset).get(key);
+        insert(key, value);
+        size++;
+    }
+
+    private void grow() {
+        var oldKeys = keys;
+        var oldValues = values;
+        keys = new byte[oldKeys.length * 2][];
+        values = new String[oldValues.length * 2];
+
+        for (int i = 0; i < oldKeys.length; i++)
+            if (oldKeys[i] != null) insert(oldKeys[i], oldValues[i]);
+    }
+
+    private void insert(byte[] key, String value) {
+        int mask = keys.length - 1;
+        int slot = Arrays.hashCode(key) & mask;
+        while (keys[slot] != null)
+            slot = (slot + 1) & mask;
+
+        keys[slot] = key;
+        values[slot] = value;
+    }
+
+    // same as Arrays.hashCode of the bytes
+    private static int hash(ByteBuffer input, int offset, int length) {
+        int hash = 1;
+        for (int i = 0; i < length; i++)
+            hash = 31 * hash + input.get(offset + i);
+        return hash;
+    }
+
+    private static boolean equal(byte[] key, ByteBuffer input, int offset, int length) {
+        if (key.length != length) return false;
+
+        for (int i = 0; i < length; i++)
+            if (key[i] != input.get(offset + i)) return false;
+
+        return true;
+    }
+
+}
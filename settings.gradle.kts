@@ -8,4 +8,5 @@ include(":loader",
         ":model:loader",
         ":utils",
         ":model:fx-handler",
-        ":test-apps:test-jfx")
+        ":test-apps:test-jfx",
+        ":test-apps:benchmark")
@@ -0,0 +1,24 @@
+plugins {
+    application
+}
+
+group = "ru.gnylka.smh.benchmark"
+
+dependencies {
+    implementation(project(":model:converter"))
+    implementation(project(":model:data"))
+    implementation(project(":model:fx-handler"))
+    implementation(project(":model:loader"))
+    implementation(project(":processing"))
+    implementation(project(":utils"))
+    implementation(rootProject.extra["kotlinStdlib"]!!)
+    implementation(rootProject.extra["picocli"]!!)
+    implementation(rootProject.extra["joml"]!!)
+    implementation(rootProject.extra["javafxBase"]!!)
+    implementation(rootProject.extra["javafxGraphics"]!!)
+}
+
+application {
+    mainClass.set("ru.gnylka.smh.benchmark.MainKt")
+    mainModule.set("ru.gnylka.smh.benchmark")
+}
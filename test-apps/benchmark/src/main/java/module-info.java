@@ -0,0 +1,23 @@
+module ru.gnylka.smh.benchmark {
+
+    requires jdk.management;
+
+    requires kotlin.stdlib;
+
+    requires info.picocli;
+
+    requires org.joml;
+
+    requires javafx.base;
+    requires javafx.graphics;
+
+    requires ru.gnylka.smh.model.converter;
+    requires ru.gnylka.smh.model.data;
+    requires ru.gnylka.smh.model.fxhandler;
+    requires ru.gnylka.smh.model.loader;
+    requires ru.gnylka.smh.processing;
+    requires ru.gnylka.smh.utils;
+
+    opens ru.gnylka.smh.benchmark.arguments to info.picocli;
+
+}
@@ -0,0 +1,264 @@
+package ru.gnylka.smh.benchmark.legacy;
+
+import javafx.geometry.Point3D;
+import javafx.scene.AmbientLight;
+import javafx.scene.Group;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Material;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.Mesh;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+import javafx.scene.shape.VertexFormat;
+import javafx.scene.transform.Rotate;
+import javafx.scene.transform.Scale;
+import javafx.scene.transform.Translate;
+import org.joml.AxisAngle4d;
+import org.joml.Quaterniond;
+import org.joml.Vector3d;
+import ru.gnylka.smh.model.data.SimpleBufferModel;
+import ru.gnylka.smh.model.data.SimpleMaterial;
+import ru.gnylka.smh.model.data.SimpleModel;
+import ru.gnylka.smh.model.data.SimpleNode;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/*
+    Reference copy of FXHandler as it was before meshes were populated with one setAll per array
+    and node transforms were built as a single Affine: values of every vertex are added to meshes
+    with addAll, every node gets Translate, Rotate and Scale computed through JOML
+ */
+public final class LegacyFXHandler {
+
+    private final SimpleBufferModel model;
+    private final Function<? super String, ? extends Image> imageLoader;
+    private final boolean saveProperties;
+
+    private final ArrayList<Mesh> parts = new ArrayList<>();
+    private final ArrayList<Material> materials = new ArrayList<>();
+    private final ArrayList<AmbientLight> lights = new ArrayList<>();
+
+    // index of every model's vertex in the current part or -1 (allocated for the first part)
+    private int[] localIndices;
+
+    private LegacyFXHandler(SimpleBufferModel model,
+                            Function<? super String, ? extends Image> imageLoader,
+                            boolean saveProperties) {
+        this.model = model;
+        this.imageLoader = imageLoader;
+        this.saveProperties = saveProperties;
+    }
+
+    public static Group load(SimpleModel model) {
+        requireNonNull(model);
+
+        return new LegacyFXHandler(SimpleBufferModel.wrap(model), null, false).createModel();
+    }
+
+    private Group createModel() {
+        for (var part : model.parts)
+            createPart(part);
+
+        for (var material : model.materials)
+            createMaterial(material);
+
+        var modelGroup = new Group();
+
+        for (var node : model.nodes)
+            modelGroup.getChildren().add(createNode(node));
+
+        if (saveProperties)
+            modelGroup.setUserData(model.globalProperties);
+
+        return modelGroup;
+    }
+
+    private void createPart(IntBuffer part) {
+        boolean noNormals = model.normalsCount == 0;
+        boolean noTex = part.get(0) >= model.texCoordsCount;
+        int partSize = part.limit();
+
+        var mesh = new TriangleMesh(noNormals ?
+                VertexFormat.POINT_TEXCOORD :
+                VertexFormat.POINT_NORMAL_TEXCOORD);
+
+        // vertices are shared by faces as they are in the part,
+        // but only the referenced ones are added (numbered in the order of their first use)
+        if (localIndices == null) {
+            localIndices = new int[model.pointsCount];
+            Arrays.fill(localIndices, -1);
+        }
+
+        int faceVertexSize = noNormals ? 2 : 3;
+        var faces = new int[partSize * faceVertexSize];
+        var partVertices = new int[partSize];
+        int verticesCount = 0;
+        for (int i = 0; i < partSize; i++) {
+            int index = part.get(i);
+            int localIndex = localIndices[index];
+            if (localIndex == -1) {
+                localIndex = verticesCount++;
+                localIndices[index] = localIndex;
+                partVertices[localIndex] = index;
+            }
+
+            int faceOffset = i * faceVertexSize;
+            faces[faceOffset] = localIndex;
+            if (!noNormals) faces[faceOffset + 1] = localIndex;
+            faces[faceOffset + faceVertexSize - 1] = noTex ? 0 : localIndex;
+        }
+
+        for (int i = 0; i < verticesCount; i++)
+            localIndices[partVertices[i]] = -1;
+
+        var meshPoints = mesh.getPoints();
+        int pointSize = mesh.getPointElementSize();
+        meshPoints.ensureCapacity(verticesCount * pointSize);
+
+        var meshNormals = mesh.getNormals();
+        int normalSize = mesh.getNormalElementSize();
+        if (!noNormals) meshNormals.ensureCapacity(verticesCount * normalSize);
+
+        var meshTex = mesh.getTexCoords();
+        int texCoordSize = mesh.getTexCoordElementSize();
+        meshTex.ensureCapacity(noTex ? texCoordSize : verticesCount * texCoordSize);
+
+        var points = model.points;
+        var normals = model.normals;
+        var texCoords = model.texCoords;
+
+        if (noTex) meshTex.addAll(0, 0);
+
+        var valuesHolder = new float[Math.max(pointSize, Math.max(normalSize, texCoordSize))];
+        for (int i = 0; i < verticesCount; i++) {
+            int index = partVertices[i];
+
+            getValues(points, index * pointSize, valuesHolder, pointSize);
+            meshPoints.addAll(valuesHolder, 0, pointSize);
+
+            if (!noNormals) {
+                getValues(normals, index * normalSize, valuesHolder, normalSize);
+                meshNormals.addAll(valuesHolder, 0, normalSize);
+            }
+
+            if (!noTex) {
+                getValues(texCoords, index * texCoordSize, valuesHolder, texCoordSize);
+                meshTex.addAll(valuesHolder, 0, texCoordSize);
+            }
+        }
+
+        mesh.getFaces().addAll(faces);
+        parts.add(mesh);
+    }
+
+    // buffers may be direct, so values are copied through a small array
+    private static void getValues(FloatBuffer source, int index, float[] destination, int size) {
+        for (int i = 0; i < size; i++)
+            destination[i] = source.get(index + i);
+    }
+
+    private void createMaterial(SimpleMaterial material) {
+        Color ambient = createColor(material.ambient, material.opacity),
+                diffuse = createColor(material.diffuse, material.opacity),
+                specular = createColor(material.specular, material.opacity);
+
+        var light = new AmbientLight(ambient);
+
+        var phong = new PhongMaterial(diffuse);
+        phong.setSpecularColor(specular);
+        phong.setSpecularPower(material.shininess);
+
+        if (!material.diffuseTexture.isEmpty())
+            if (imageLoader != null)
+                phong.setDiffuseMap(imageLoader.apply(material.diffuseTexture));
+
+        if (!material.specularTexture.isEmpty())
+            if (imageLoader != null)
+                phong.setSpecularMap(imageLoader.apply(material.specularTexture));
+
+        materials.add(phong);
+        lights.add(light);
+    }
+
+    private Group createNode(SimpleNode node) {
+        var nodeGroup = new Group();
+        nodeGroup.setId(node.id);
+
+        var transforms = nodeGroup.getTransforms();
+        var translation = createVector(node.translation);
+        var rotation = createQuaternion(node.rotation);
+        var scale = createVector(node.scale);
+
+        var axisAngle = rotation.get(new AxisAngle4d());
+        transforms.add(new Translate(translation.x, translation.y, translation.z));
+        transforms.add(new Rotate(
+                Math.toDegrees(axisAngle.angle),
+                new Point3D(axisAngle.x, axisAngle.y, axisAngle.z)
+        ));
+        transforms.add(new Scale(scale.x, scale.y, scale.z));
+
+        var nodePartsGroup = createNodeParts(node);
+        nodeGroup.getChildren().add(nodePartsGroup);
+
+        var childrenGroup = new Group();
+        for (var child : node.children)
+            childrenGroup.getChildren().add(createNode(child));
+        nodeGroup.getChildren().add(childrenGroup);
+
+        if (saveProperties)
+            nodeGroup.setUserData(node.properties);
+
+        return nodeGroup;
+    }
+
+    private Group createNodeParts(SimpleNode node) {
+        var nodePartsGroup = new Group();
+        var nodeParts = nodePartsGroup.getChildren();
+        for (var nodePart : node.nodeParts) {
+            var meshView = new MeshView(parts.get(nodePart.partIndex));
+            meshView.setMaterial(materials.get(nodePart.materialIndex));
+
+            var light = lights.get(nodePart.materialIndex);
+            light.getScope().add(meshView);
+
+            nodeParts.add(meshView);
+            nodeParts.add(light);
+        }
+
+        return nodePartsGroup;
+    }
+
+    private Color createColor(int[] colorArray, int opacity) {
+        return Color.rgb(
+                colorArray[0],
+                colorArray[1],
+                colorArray[2],
+                opacity / 255f
+        );
+    }
+
+    private Vector3d createVector(float[] vectorArray) {
+        return new Vector3d(
+                vectorArray[0],
+                vectorArray[1],
+                vectorArray[2]
+        );
+    }
+
+    private Quaterniond createQuaternion(float[] quaternionArray) {
+        return new Quaterniond(
+                quaternionArray[0],
+                quaternionArray[1],
+                quaternionArray[2],
+                quaternionArray[3]
+        );
+    }
+
+}
@@ -0,0 +1,14 @@
+package ru.gnylka.smh.benchmark
+
+enum class Benchmark(
+        internal val description: String,
+        internal val run: (Measurement) -> Unit
+) {
+    LOADER("ModelLoader against the DataInputStream-based loader", ::runLoaderBenchmark),
+    KEYS("Points and texture coordinates keys found by a hash table against binary search", ::runKeysBenchmark),
+    MESHES("FXHandler meshes populated with one setAll per array against addAll per vertex", ::runMeshesBenchmark),
+    TRANSFORMS("FXHandler node transforms built as a single Affine against JOML-computed transforms",
+            ::runTransformsBenchmark),
+    OPTIMIZATION("optimizeModel over primitive arrays against the boxing implementation", ::runOptimizationBenchmark),
+    CONVERSION("convertModel over primitive arrays against the boxing implementation", ::runConversionBenchmark)
+}
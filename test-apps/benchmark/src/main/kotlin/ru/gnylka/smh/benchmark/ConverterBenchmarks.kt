@@ -0,0 +1,71 @@
+package ru.gnylka.smh.benchmark
+
+import ru.gnylka.smh.benchmark.legacy.LegacyData2Simple
+import ru.gnylka.smh.benchmark.legacy.LegacyModelOptimization
+import ru.gnylka.smh.model.converter.convertModel
+import ru.gnylka.smh.model.converter.optimizeModel
+import ru.gnylka.smh.model.data.SimpleModel
+import ru.gnylka.smh.model.loader.ModelLoader
+import java.io.ByteArrayInputStream
+
+// the legacy implementation takes seconds for larger models, so it is run only a few times
+private const val LEGACY_WARMUP = 1
+private const val LEGACY_ITERATIONS = 3
+
+/*
+    Default optimizations of models of 4 parts (keys are random, so optimized models
+    are compared after they are loaded, which resolves optimizations)
+ */
+internal fun runOptimizationBenchmark(measurement: Measurement) {
+    val legacyMeasurement = measurement.limit(LEGACY_WARMUP, LEGACY_ITERATIONS)
+
+    for (verticesCount in listOf(25_000, 50_000, 100_000)) {
+        val model = createModel(7, verticesCount, 4, verticesCount / 4 * 3)
+        checkResolvedEqually(model, LegacyModelOptimization(model).optimizeModel())
+        checkResolvedEqually(model, optimizeModel(model))
+
+        legacyMeasurement.measure("legacy optimization, $verticesCount vertices") {
+            LegacyModelOptimization(model).optimizeModel()
+        }
+        measurement.measure("optimizeModel, $verticesCount vertices") { optimizeModel(model) }
+    }
+}
+
+/*
+    Conversion of a model of 40 meshes and 5000 nodes
+    (the legacy implementation adds offsets to part indices of its source model,
+    so it converts a copy of parts every run)
+ */
+internal fun runConversionBenchmark(measurement: Measurement) {
+    val legacyMeasurement = measurement.limit(LEGACY_WARMUP, LEGACY_ITERATIONS)
+
+    val model = createSourceModel(9, 40, 100_000, 50, 5000)
+    checkConvertedEqually(LegacyData2Simple(copyParts(model), false).createSimpleModel(), convertModel(model))
+
+    legacyMeasurement.measure("legacy conversion", { copyParts(model) }) {
+        LegacyData2Simple(it, false).createSimpleModel()
+    }
+    measurement.measure("convertModel") { convertModel(model) }
+}
+
+private fun checkConvertedEqually(expected: SimpleModel, actual: SimpleModel) {
+    check(expected.points.contentEquals(actual.points) &&
+            expected.normals.contentEquals(actual.normals) &&
+            expected.texCoords.contentEquals(actual.texCoords) &&
+            expected.parts.contentDeepEquals(actual.parts) &&
+            expected.materials.contentEquals(actual.materials) &&
+            expected.nodes.contentEquals(actual.nodes)) {
+        "Converted model differs from the one converted by the legacy implementation"
+    }
+}
+
+private fun checkResolvedEqually(model: SimpleModel, optimizedModel: SimpleModel) {
+    val resolved = ModelLoader.load(ByteArrayInputStream(writeBinaryModel(optimizedModel)))
+
+    check(model.points.contentEquals(resolved.points) &&
+            model.normals.contentEquals(resolved.normals) &&
+            model.texCoords.contentEquals(resolved.texCoords) &&
+            model.parts.contentDeepEquals(resolved.parts)) {
+        "Optimized model differs from the source one once it is loaded"
+    }
+}
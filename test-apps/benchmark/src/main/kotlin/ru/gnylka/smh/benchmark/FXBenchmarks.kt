@@ -0,0 +1,67 @@
+package ru.gnylka.smh.benchmark
+
+import javafx.geometry.BoundingBox
+import javafx.scene.Group
+import javafx.scene.Node
+import javafx.scene.Parent
+import javafx.scene.shape.MeshView
+import javafx.scene.shape.TriangleMesh
+import javafx.scene.transform.Transform
+import ru.gnylka.smh.benchmark.legacy.LegacyFXHandler
+import ru.gnylka.smh.model.fxhandler.FXHandler
+
+/*
+    Scene graphs are only created (JavaFX toolkit is not started),
+    which is what FXHandler does before the model is added to the scene
+ */
+
+// two parts of 290 x 290 cells (504 600 indices each)
+internal fun runMeshesBenchmark(measurement: Measurement) {
+    val model = createGridModel(290, 2)
+    val legacyMeshes = getMeshes(LegacyFXHandler.load(model))
+    val meshes = getMeshes(FXHandler.load(model, null))
+    check(legacyMeshes.size == meshes.size && legacyMeshes.indices.all {
+        legacyMeshes[it].faces.toArray(null).contentEquals(meshes[it].faces.toArray(null)) &&
+                legacyMeshes[it].points.toArray(null).contentEquals(meshes[it].points.toArray(null))
+    }) { "Meshes created by the legacy handler and FXHandler differ" }
+
+    measurement.measure("legacy handler") { LegacyFXHandler.load(model) }
+    measurement.measure("FXHandler") { FXHandler.load(model, null) }
+}
+
+// 250 root nodes with 200 children each
+internal fun runTransformsBenchmark(measurement: Measurement) {
+    val model = createHierarchyModel(19, 250, 200)
+    val legacyTransforms = getTransforms(LegacyFXHandler.load(model))
+    // flattened graph keeps nodes only if they are specified
+    val ids = legacyTransforms.keys
+    for (current in listOf(FXHandler.load(model, null), FXHandler.loadFlattened(model, null, ids)))
+        check(getTransforms(current).all { (id, transform) ->
+            transform.similarTo(legacyTransforms.getValue(id), BoundingBox(0.0, 0.0, 0.0, 1.0, 1.0, 1.0), 1e-4)
+        }) { "Transforms created by the legacy handler and FXHandler differ" }
+
+    measurement.measure("legacy handler") { LegacyFXHandler.load(model) }
+    measurement.measure("FXHandler") { FXHandler.load(model, null) }
+    measurement.measure("FXHandler, flattened") { FXHandler.loadFlattened(model, null, emptySet()) }
+}
+
+// transforms of nodes (groups with ids) relative to the model
+private fun getTransforms(parent: Parent): Map<String, Transform> {
+    val transforms = HashMap<String, Transform>()
+    fun collect(node: Node) {
+        val id = node.id
+        if (id != null) transforms[id] = node.localToSceneTransform
+        if (node is Parent) node.childrenUnmodifiable.forEach(::collect)
+    }
+
+    parent.childrenUnmodifiable.forEach(::collect)
+    return transforms
+}
+
+private fun getMeshes(parent: Parent): List<TriangleMesh> = parent.childrenUnmodifiable.flatMap {
+    when (it) {
+        is MeshView -> listOf(it.mesh as TriangleMesh)
+        is Group -> getMeshes(it)
+        else -> emptyList()
+    }
+}
@@ -0,0 +1,76 @@
+package ru.gnylka.smh.benchmark
+
+import ru.gnylka.smh.benchmark.legacy.LegacyBinaryWriting
+import ru.gnylka.smh.benchmark.legacy.LegacyModelLoader
+import ru.gnylka.smh.model.converter.optimizeModel
+import ru.gnylka.smh.model.data.SimpleModel
+import ru.gnylka.smh.model.loader.ModelLoader
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+
+/*
+    The same bytes (written without sections directory) are loaded by both loaders,
+    the current format is loaded by ModelLoader as well
+ */
+internal fun runLoaderBenchmark(measurement: Measurement) {
+    val model = createModel(11, 32_000, 40, 60_000)
+
+    for ((label, variant) in listOf("raw" to model, "optimized" to optimizeModel(model))) {
+        val legacyBytes = writeLegacyModel(variant)
+        val bytes = writeBinaryModel(variant)
+        checkLoadedEqually(legacyBytes)
+
+        measurement.measure("legacy loader, $label") {
+            LegacyModelLoader.load(ByteArrayInputStream(legacyBytes))
+        }
+        measurement.measure("ModelLoader, $label") {
+            ModelLoader.load(ByteArrayInputStream(legacyBytes))
+        }
+        measurement.measure("ModelLoader, $label, sections directory") {
+            ModelLoader.load(ByteArrayInputStream(bytes))
+        }
+    }
+}
+
+/*
+    Most points and texture coordinates of the model are replaced with keys when it is indexed,
+    so the difference between loading indexed and unindexed model is the cost of finding keys
+    (binary search over the keys array in the legacy loader, hash table in ModelLoader)
+ */
+internal fun runKeysBenchmark(measurement: Measurement) {
+    val model = createPooledModel(5, 32_000, 4000, 3000, 10, 30_000)
+    val unindexed = writeLegacyModel(optimizeModel(model, indexPoints = false, indexTexCoords = false))
+    val indexed = writeLegacyModel(optimizeModel(model))
+    checkLoadedEqually(indexed)
+
+    measurement.measure("legacy loader, unindexed") {
+        LegacyModelLoader.load(ByteArrayInputStream(unindexed))
+    }
+    measurement.measure("legacy loader, indexed") {
+        LegacyModelLoader.load(ByteArrayInputStream(indexed))
+    }
+    measurement.measure("ModelLoader, unindexed") {
+        ModelLoader.load(ByteArrayInputStream(unindexed))
+    }
+    measurement.measure("ModelLoader, indexed") {
+        ModelLoader.load(ByteArrayInputStream(indexed))
+    }
+}
+
+internal fun writeLegacyModel(model: SimpleModel): ByteArray {
+    val output = ByteArrayOutputStream()
+    LegacyBinaryWriting(model).writeModelAsBinary(output)
+    return output.toByteArray()
+}
+
+internal fun checkLoadedEqually(legacyBytes: ByteArray) {
+    val legacy = LegacyModelLoader.load(ByteArrayInputStream(legacyBytes))
+    val current = ModelLoader.load(ByteArrayInputStream(legacyBytes))
+
+    check(legacy.points.contentEquals(current.points) &&
+            legacy.normals.contentEquals(current.normals) &&
+            legacy.texCoords.contentEquals(current.texCoords) &&
+            legacy.parts.contentDeepEquals(current.parts)) {
+        "Models loaded by the legacy loader and ModelLoader differ"
+    }
+}
@@ -0,0 +1,23 @@
+package ru.gnylka.smh.benchmark
+
+import picocli.CommandLine
+import ru.gnylka.smh.benchmark.arguments.ArgumentsContainer
+
+fun main(args: Array<String>) {
+    val container = ArgumentsContainer()
+    val cli = CommandLine(container)
+            .setCaseInsensitiveEnumValuesAllowed(true)
+
+    val exitValue = cli.execute(*args)
+    if (exitValue != 0 ||
+            cli.isUsageHelpRequested ||
+            cli.isVersionHelpRequested) return
+
+    val measurement = Measurement(container.warmup, container.iterations)
+    val benchmarks = container.benchmarks.ifEmpty { Benchmark.values().toList() }
+    for (benchmark in benchmarks.distinct()) {
+        println("${benchmark.name.toLowerCase()}: ${benchmark.description}")
+        benchmark.run(measurement)
+        println()
+    }
+}
@@ -0,0 +1,61 @@
+package ru.gnylka.smh.benchmark
+
+import java.lang.management.ManagementFactory
+import com.sun.management.ThreadMXBean
+
+/*
+    Runs every action a number of times to warm it up, then measures the next runs
+    and prints their average and best time and heap bytes allocated by one run
+    (allocations are counted for the current thread only)
+ */
+internal class Measurement internal constructor(
+        private val warmup: Int,
+        private val iterations: Int
+) {
+
+    private val threads = ManagementFactory.getThreadMXBean() as ThreadMXBean
+
+    // results are kept, so that actions are not optimized away
+    private var result: Any? = null
+
+    /**
+     * @return measurement with at most specified amounts of runs (for slow actions)
+     */
+    internal fun limit(maxWarmup: Int, maxIterations: Int) =
+            Measurement(minOf(warmup, maxWarmup), minOf(iterations, maxIterations))
+
+    internal fun measure(name: String, action: () -> Any?) = measure(name, {}) { action() }
+
+    /**
+     * Measures action, whose input is created by prepare before every run
+     * (prepare is counted neither in time nor in allocations)
+     */
+    internal fun <T> measure(name: String, prepare: () -> T, action: (T) -> Any?) {
+        repeat(warmup) { result = action(prepare()) }
+
+        val threadId = Thread.currentThread().id
+        var best = Long.MAX_VALUE
+        var total = 0L
+        var allocated = 0L
+        repeat(iterations) {
+            val input = prepare()
+            val allocatedBefore = threads.getThreadAllocatedBytes(threadId)
+            val start = System.nanoTime()
+            result = action(input)
+            val time = System.nanoTime() - start
+            allocated += threads.getThreadAllocatedBytes(threadId) - allocatedBefore
+
+            total += time
+            best = minOf(best, time)
+        }
+        result = null
+
+        println("  %-56s %9.2f ms (best %9.2f ms) %9.1f MB allocated".format(
+                name,
+                total / 1e6 / iterations,
+                best / 1e6,
+                allocated / 1e6 / iterations
+        ))
+    }
+
+}
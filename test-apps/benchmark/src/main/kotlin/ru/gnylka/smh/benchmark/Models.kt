@@ -0,0 +1,248 @@
+package ru.gnylka.smh.benchmark
+
+import org.joml.Quaterniond
+import org.joml.Vector3d
+import ru.gnylka.smh.model.converter.writeModel
+import ru.gnylka.smh.model.data.SimpleMaterial
+import ru.gnylka.smh.model.data.SimpleModel
+import ru.gnylka.smh.model.data.SimpleNode
+import ru.gnylka.smh.model.data.SimpleNodePart
+import ru.gnylka.smh.processing.data.*
+import ru.gnylka.smh.processing.data.MeshAttribute.*
+import java.io.ByteArrayOutputStream
+import java.util.*
+import kotlin.math.sqrt
+
+private const val MATERIALS_COUNT = 3
+
+/*
+    Synthetic models are generated from a seed, so that every run measures the same data
+ */
+
+/**
+ * Creates model whose points and texture coordinates are often repeated
+ * and whose parts contain runs of consecutive indices, as exported meshes do
+ */
+internal fun createModel(seed: Long, verticesCount: Int, partsCount: Int, partSize: Int): SimpleModel {
+    val random = Random(seed)
+
+    val palette = FloatArray(50) { (random.nextInt(2000) - 1000) / 100f }
+    val points = FloatArray(verticesCount * 3)
+    for (i in 0 until verticesCount)
+        if (i > 0 && random.nextInt(5) == 0) System.arraycopy(points, (i - 1) * 3, points, i * 3, 3)
+        else for (j in 0 until 3) points[i * 3 + j] =
+                if (random.nextInt(3) == 0) palette[random.nextInt(palette.size)]
+                else (random.nextInt(200_000) - 100_000) / 1000f
+
+    val normals = FloatArray(verticesCount * 3) { random.nextFloat() * 2 - 1 }
+
+    val texPalette = FloatArray(20) { random.nextFloat() }
+    val texCoords = FloatArray(verticesCount * 2) {
+        if (random.nextInt(3) == 0) texPalette[random.nextInt(texPalette.size)]
+        else random.nextFloat()
+    }
+
+    val parts = Array(partsCount) { createPart(random, verticesCount, partSize) }
+    return SimpleModel(points, normals, texCoords, parts,
+            createMaterials(random), createNodes(random, partsCount), arrayOf())
+}
+
+/**
+ * Creates model whose points and texture coordinates are drawn from small pools
+ * of distinct values, so that most of them are replaced with keys by indexing
+ */
+internal fun createPooledModel(seed: Long,
+                               verticesCount: Int,
+                               distinctPoints: Int,
+                               distinctTexCoords: Int,
+                               partsCount: Int,
+                               partSize: Int): SimpleModel {
+    val random = Random(seed)
+
+    val pointsPool = FloatArray(distinctPoints * 3) { random.nextFloat() * 100 }
+    val texCoordsPool = FloatArray(distinctTexCoords * 2) { random.nextFloat() }
+
+    val points = FloatArray(verticesCount * 3)
+    val normals = FloatArray(verticesCount * 3) { random.nextFloat() * 2 - 1 }
+    val texCoords = FloatArray(verticesCount * 2)
+    for (i in 0 until verticesCount) {
+        System.arraycopy(pointsPool, random.nextInt(distinctPoints) * 3, points, i * 3, 3)
+        System.arraycopy(texCoordsPool, random.nextInt(distinctTexCoords) * 2, texCoords, i * 2, 2)
+    }
+
+    val parts = Array(partsCount) { createPart(random, verticesCount, partSize) }
+    return SimpleModel(points, normals, texCoords, parts,
+            createMaterials(random), createNodes(random, partsCount), arrayOf())
+}
+
+/**
+ * Creates model of separate grids of cellsCount x cellsCount cells (2 triangles each),
+ * which are placed into a node as parts with different materials
+ */
+internal fun createGridModel(cellsCount: Int, partsCount: Int): SimpleModel {
+    val size = cellsCount + 1
+    val verticesCount = size * size * partsCount
+
+    val points = FloatArray(verticesCount * 3)
+    val normals = FloatArray(verticesCount * 3)
+    val texCoords = FloatArray(verticesCount * 2)
+    for (i in 0 until verticesCount) {
+        val x = i % size
+        val y = i / size % size
+        points[i * 3] = x.toFloat()
+        points[i * 3 + 1] = y.toFloat()
+        points[i * 3 + 2] = (i / (size * size)).toFloat()
+        normals[i * 3 + 2] = 1f
+        texCoords[i * 2] = x.toFloat() / cellsCount
+        texCoords[i * 2 + 1] = y.toFloat() / cellsCount
+    }
+
+    val parts = Array(partsCount) { part ->
+        val offset = part * size * size
+        val indices = IntArray(cellsCount * cellsCount * 6)
+        var i = 0
+        for (y in 0 until cellsCount)
+            for (x in 0 until cellsCount) {
+                val corner = offset + y * size + x
+                for (index in intArrayOf(corner, corner + 1, corner + size,
+                        corner + 1, corner + size + 1, corner + size))
+                    indices[i++] = index
+            }
+        indices
+    }
+
+    val node = SimpleNode(
+            "grid",
+            floatArrayOf(0f, 0f, 0f),
+            floatArrayOf(0f, 0f, 0f, 1f),
+            floatArrayOf(1f, 1f, 1f),
+            Array(partsCount) { SimpleNodePart(it, it % MATERIALS_COUNT) },
+            arrayOf(),
+            arrayOf()
+    )
+    return SimpleModel(points, normals, texCoords, parts,
+            createMaterials(Random(0)), arrayOf(node), arrayOf())
+}
+
+/**
+ * Creates model of rootsCount root nodes with childrenCount children each,
+ * nodes are translated, rotated and scaled and have no parts
+ */
+internal fun createHierarchyModel(seed: Long, rootsCount: Int, childrenCount: Int): SimpleModel {
+    val random = Random(seed)
+
+    fun createNode(id: String, children: Array<SimpleNode>): SimpleNode {
+        val rotation = FloatArray(4) { random.nextFloat() * 2 - 1 }
+        val length = sqrt(rotation.fold(0f) { sum, value -> sum + value * value })
+        for (i in rotation.indices) rotation[i] /= length
+
+        return SimpleNode(
+                id,
+                FloatArray(3) { random.nextFloat() * 10 },
+                rotation,
+                FloatArray(3) { 0.5f + random.nextFloat() },
+                arrayOf(),
+                children,
+                arrayOf()
+        )
+    }
+
+    val nodes = Array(rootsCount) { root ->
+        createNode("node$root", Array(childrenCount) { createNode("node$root.$it", arrayOf()) })
+    }
+    return SimpleModel(FloatArray(0), FloatArray(0), FloatArray(0), arrayOf(),
+            arrayOf(), nodes, arrayOf())
+}
+
+/**
+ * Creates source model of meshesCount meshes with up to maxVerticesCount vertices each,
+ * whose attributes are laid out in different orders, and of nodesCount nodes
+ * referencing random parts
+ */
+internal fun createSourceModel(seed: Long,
+                               meshesCount: Int,
+                               maxVerticesCount: Int,
+                               partsCount: Int,
+                               nodesCount: Int): Model {
+    val random = Random(seed)
+
+    val layouts = listOf(
+            listOf(POSITION, NORMAL, TEXCOORD),
+            listOf(POSITION, NORMAL),
+            listOf(NORMAL, TEXCOORD, POSITION),
+            listOf(NORMAL, POSITION)
+    )
+    var partId = 0
+    val meshes = List(meshesCount) {
+        val attributes = layouts[random.nextInt(layouts.size)]
+        val verticesCount = 1 + random.nextInt(maxVerticesCount)
+        val vertices = FloatArray(verticesCount * attributes.sumBy { it.size }) { random.nextFloat() }
+        val parts = List(partsCount) {
+            Part("part${partId++}", IntArray(3 * (1 + random.nextInt(50))) { random.nextInt(verticesCount) })
+        }
+        Mesh(attributes, vertices, parts)
+    }
+
+    val materials = List(MATERIALS_COUNT) {
+        val color = Vector3d(random.nextDouble(), random.nextDouble(), random.nextDouble())
+        Material("material$it", color, color, color, 1.0, random.nextDouble() * 10,
+                if (it == 0) listOf("diffuse.png") else listOf(), listOf())
+    }
+
+    val nodes = List(nodesCount) {
+        val nodeParts = List(random.nextInt(4)) {
+            NodePart("part${random.nextInt(partId)}", "material${random.nextInt(MATERIALS_COUNT)}")
+        }
+        Node("node$it", Vector3d(random.nextDouble(), random.nextDouble(), random.nextDouble()),
+                Quaterniond(), Vector3d(1.0, 1.0, 1.0), nodeParts, listOf(), listOf())
+    }
+
+    return Model(meshes, materials, nodes, listOf())
+}
+
+/**
+ * @return copy of model with copied part indices (the rest is shared)
+ */
+internal fun copyParts(model: Model) = model.copy(meshes = model.meshes.map { mesh ->
+    mesh.copy(parts = mesh.parts.map { it.copy(indices = it.indices.copyOf()) })
+})
+
+/**
+ * @return model written in the current binary format
+ */
+internal fun writeBinaryModel(model: SimpleModel): ByteArray {
+    val output = ByteArrayOutputStream()
+    writeModel(model, output)
+    return output.toByteArray()
+}
+
+// a third of indices start runs of up to 9 consecutive indices
+private fun createPart(random: Random, verticesCount: Int, partSize: Int): IntArray {
+    val part = IntArray(partSize)
+    var i = 0
+    while (i < partSize)
+        if (random.nextInt(3) == 0) {
+            val start = random.nextInt(verticesCount)
+            var j = 0
+            while (i < partSize && j < 9 && start + j < verticesCount) part[i++] = start + j++
+        } else part[i++] = random.nextInt(verticesCount)
+
+    return part
+}
+
+private fun createMaterials(random: Random) = Array(MATERIALS_COUNT) {
+    val color = IntArray(3) { random.nextInt(256) }
+    SimpleMaterial(color, color, color, 255, random.nextFloat(), "", "")
+}
+
+private fun createNodes(random: Random, partsCount: Int) = Array(partsCount) {
+    SimpleNode(
+            "node$it",
+            floatArrayOf(random.nextFloat(), random.nextFloat(), random.nextFloat()),
+            floatArrayOf(0f, 0f, 0f, 1f),
+            floatArrayOf(1f, 1f, 1f),
+            arrayOf(SimpleNodePart(it, it % MATERIALS_COUNT)),
+            arrayOf(),
+            arrayOf()
+    )
+}
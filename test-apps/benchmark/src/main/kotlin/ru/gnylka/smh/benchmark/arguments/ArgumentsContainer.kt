@@ -0,0 +1,58 @@
+package ru.gnylka.smh.benchmark.arguments
+
+import picocli.CommandLine.*
+import ru.gnylka.smh.benchmark.Benchmark
+
+@Command(name = "smh-benchmark",
+        version = ["1.2"],
+        description = [
+            "Measures time and heap allocations of loading, converting and displaying models",
+            "Every benchmark compares the current implementation with the reference one it replaced"
+        ],
+        sortOptions = false,
+        showDefaultValues = true,
+        usageHelpAutoWidth = true
+)
+class ArgumentsContainer : Runnable {
+
+    @JvmField
+    @Parameters(description = [
+        "Benchmarks to run: \${COMPLETION-CANDIDATES}",
+        "By default all benchmarks are run"
+    ],
+            paramLabel = "<benchmark>",
+            arity = "0..*",
+            showDefaultValue = Help.Visibility.NEVER)
+    var benchmarks: List<Benchmark> = emptyList()
+
+    @JvmField
+    @Option(names = ["-w", "--warmup"],
+            paramLabel = "<count>",
+            description = ["Runs of every measured action before it is measured"],
+            defaultValue = "20",
+            order = 0)
+    var warmup: Int = 20
+
+    @JvmField
+    @Option(names = ["-i", "--iterations"],
+            paramLabel = "<count>",
+            description = ["Measured runs of every action"],
+            defaultValue = "20",
+            order = 1)
+    var iterations: Int = 20
+
+    @Option(names = ["-h", "--help"],
+            description = ["Print help information"],
+            usageHelp = true,
+            order = 2)
+    var help: Boolean = false
+
+    @Option(names = ["-v", "--version"],
+            description = ["Print version information"],
+            versionHelp = true,
+            order = 3)
+    var version: Boolean = false
+
+    override fun run() = Unit
+
+}
@@ -1,6 +1,7 @@
 package ru.gnylka.smh.testjfx
 
 import javafx.application.Application
+import javafx.application.Platform
 import javafx.scene.*
 import javafx.scene.image.Image
 import javafx.scene.layout.Pane
@@ -10,14 +11,20 @@ import javafx.scene.shape.Shape3D
 import javafx.stage.Stage
 import ru.gnylka.smh.model.data.SimpleModel
 import ru.gnylka.smh.model.fxhandler.FXHandler
+import ru.gnylka.smh.model.fxhandler.TextureCache
 import ru.gnylka.smh.model.loader.ModelLoader
 import java.io.IOException
 import java.io.InputStream
 import java.nio.file.Files
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ForkJoinPool
+import java.util.logging.Level
 import java.util.logging.LogManager.getLogManager
 import java.util.logging.Logger
 import java.util.zip.GZIPInputStream
 
+private const val MAX_TEXTURES = 64
+
 class ModelViewer : Application() {
 
     private lateinit var camCtrl: FPSCameraController
@@ -38,19 +45,6 @@ class ModelViewer : Application() {
         val mainPane = Pane()
         val mainScene = Scene(mainPane, 500.0, 500.0, true)
 
-        val model = tryLoadFromFile()
-        if (model != null) modelToGroup(model)?.also { modelGroup ->
-            faceCulling?.let { culling ->
-                changeFaceCullingRecursively(modelGroup, culling)
-            }
-
-            modelGroup.scaleX *= scale
-            modelGroup.scaleY *= scale
-            modelGroup.scaleZ *= scale
-
-            mainPane.children += modelGroup
-        }
-
         if (planes > 0.0) mainPane.children += createPlanes()
 
         val perCam = PerspectiveCamera(true)
@@ -74,8 +68,16 @@ class ModelViewer : Application() {
         configurePrimaryStage(primaryStage)
         primaryStage.show()
 
-        if (info && model != null)
-            createModelInfoStage(model)
+        // the window is responsive while the model is loaded,
+        // the scene is changed and the info stage is created on FX thread
+        CompletableFuture.supplyAsync(::tryLoadFromFile).thenAccept { model ->
+            if (model != null) modelToGroup(model).whenCompleteAsync({ modelGroup, e ->
+                if (e != null) logger.log(Level.WARNING, UNKNOWN_EXCEPTION_ON_MODEL_LOADING, e)
+                else addModelGroup(mainPane, modelGroup)
+
+                if (info) createModelInfoStage(model)
+            }, Platform::runLater)
+        }
     }
 
     override fun stop() {
@@ -112,14 +114,22 @@ class ModelViewer : Application() {
         null
     }
 
-    private fun modelToGroup(model: SimpleModel): Group? = try {
-        FXHandler.load(model) {
-            Image(texturesDirectory.resolve(it).toUri().toString())
+    private fun modelToGroup(model: SimpleModel) = FXHandler.loadAsync(
+            model,
+            TextureCache.of(texturesDirectory, MAX_TEXTURES, true),
+            ForkJoinPool.commonPool()
+    )
+
+    private fun addModelGroup(pane: Pane, modelGroup: Group) {
+        faceCulling?.let { culling ->
+            changeFaceCullingRecursively(modelGroup, culling)
         }
-    } catch (e: Exception) {
-        logger.warning(UNKNOWN_EXCEPTION_ON_MODEL_LOADING)
-        e.printStackTrace()
-        null
+
+        modelGroup.scaleX *= scale
+        modelGroup.scaleY *= scale
+        modelGroup.scaleZ *= scale
+
+        pane.children.add(0, modelGroup)
     }
 
     private fun changeFaceCullingRecursively(node: Node, to: CullFace) {